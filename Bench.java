@@ -0,0 +1,241 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+/** This class benchmarks the commands of the Repository API on a
+ * synthetic repository, and prints the timings as JSON so that they can
+ * be compared between versions.
+ *
+ * Usage, in an empty directory:
+ *     java gitlet.Bench [FILES [COMMITS [BRANCHES [ITERATIONS]]]]
+ * builds a repository of FILES files with a history of COMMITS commits,
+ * each changing a few files, and BRANCHES branches which each add a few
+ * commits of their own. Every benchmark is then run WARMUP times untimed
+ * and ITERATIONS times timed. Whatever an operation needs first, such as
+ * a changed file for add, is set up outside the timed part.
+ * @author Parth Shisode */
+public class Bench {
+
+    /** Untimed runs of each benchmark, to let the JIT settle. */
+    static final int WARMUP = 5;
+
+    /** Files are spread over this many directories. */
+    static final int DIRS = 16;
+
+    /** Size in bytes of the contents of each file. */
+    static final int FILE_SIZE = 1 << 10;
+
+    /** Number of files each generated commit changes. */
+    static final int CHANGES = 4;
+
+    /** @param args STRING[]
+     * Builds the repository and prints the results. */
+    public static void main(String... args) {
+        _files = arg(args, 0, 1000);
+        _commits = Math.max(1, arg(args, 1, 100));
+        _branches = Math.max(1, arg(args, 2, 4));
+        _iterations = arg(args, 3, 20);
+        String[] existing = Repository.WORK_DIR.list();
+        if (existing == null || existing.length > 0) {
+            System.out.println("Run Bench in an empty directory.");
+            return;
+        }
+
+        long start = System.nanoTime();
+        generate();
+        StringBuilder json = new StringBuilder("{\n  \"params\": {");
+        json.append("\"files\": ").append(_files)
+                .append(", \"commits\": ").append(_commits)
+                .append(", \"branches\": ").append(_branches)
+                .append(", \"iterations\": ").append(_iterations)
+                .append(", \"warmup\": ").append(WARMUP)
+                .append(", \"setup_ms\": ")
+                .append((System.nanoTime() - start) / 1000000)
+                .append("},\n  \"results\": [");
+
+        json.append(time("add", () -> edit(pick()),
+            () -> Repository.add(_last))).append(',');
+        json.append(time("commit", () -> {
+            edit(pick());
+            Repository.add(_last);
+        }, () -> Repository.commit("bench commit " + _n))).append(',');
+        json.append(time("log", null, () -> {
+            for (CommitObj c : Repository.log()) {
+                c.getMessage();
+            }
+        })).append(',');
+        json.append(time("global-log", null, () -> {
+            for (CommitLog.Entry e : Repository.globalLog()) {
+                e.getMessage();
+            }
+        })).append(',');
+        json.append(time("find", null,
+            () -> Repository.find("commit " + _commits / 2))).append(',');
+        json.append(time("checkout", null, () -> Repository.checkout(
+                Repository.currentBranch().equals("master") ? "b0"
+                        : "master"))).append(',');
+        if (!Repository.currentBranch().equals("master")) {
+            Repository.checkout("master");
+        }
+        String head = Repository.log().iterator().next().getSha();
+        String old = _shas[(_commits + 1) / 2];
+        json.append(time("reset", null, () -> Repository.reset(
+                _n % 2 == 0 ? old : head))).append(',');
+        Repository.reset(head);
+        json.append(time("merge", () -> {
+            String name = "merge" + _n;
+            Repository.branch(name);
+            edit(pick());
+            Repository.add(_last);
+            Repository.commit("ours " + _n);
+            Repository.checkout(name);
+            edit(pick());
+            Repository.add(_last);
+            Repository.commit("theirs " + _n);
+            Repository.checkout("master");
+        }, () -> Repository.merge("merge" + _n)));
+
+        json.append("\n  ],\n  \"cache\": {\"hits\": ")
+                .append(ObjectCache.hits()).append(", \"misses\": ")
+                .append(ObjectCache.misses()).append(", \"bytes\": ")
+                .append(ObjectCache.bytes()).append("}\n}");
+        System.out.println(json);
+    }
+
+    /** @return String
+     * @param name STRING
+     * @param setup RUNNABLE, run untimed before each OP, or null.
+     * @param op RUNNABLE
+     * Runs OP WARMUP and then ITERATIONS times and returns the JSON object
+     * describing how long it took. */
+    private static String time(String name, Runnable setup, Runnable op) {
+        long[] ns = new long[_iterations];
+        for (int i = -WARMUP; i < _iterations; i += 1) {
+            _n += 1;
+            if (setup != null) {
+                setup.run();
+            }
+            long t = System.nanoTime();
+            op.run();
+            t = System.nanoTime() - t;
+            if (i >= 0) {
+                ns[i] = t;
+            }
+        }
+        Arrays.sort(ns);
+        long total = 0;
+        for (long t : ns) {
+            total += t;
+        }
+        double mean = ns.length == 0 ? 0 : (double) total / ns.length;
+        return String.format("\n    {\"benchmark\": \"%s\", \"mean_ns\": %.0f,"
+                + " \"p50_ns\": %d, \"p90_ns\": %d, \"max_ns\": %d,"
+                + " \"ops_per_s\": %.2f}", name, mean, percentile(ns, 50),
+                percentile(ns, 90), percentile(ns, 100),
+                mean == 0 ? 0 : 1e9 / mean);
+    }
+
+    /** @return long
+     * @param sorted LONG[]
+     * @param p INT
+     * Returns the P-th percentile of SORTED. */
+    private static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, i)];
+    }
+
+    /** Writes the files, commits them, builds the history and branches,
+     * and leaves master checked out. */
+    private static void generate() {
+        for (int i = 0; i < _files; i += 1) {
+            edit(i);
+        }
+        Repository.init();
+        for (int d = 0; d < Math.min(DIRS, _files); d += 1) {
+            Repository.add("d" + d);
+        }
+        Repository.commit("files");
+        _shas = new String[_commits + 1];
+        for (int c = 1; c <= _commits; c += 1) {
+            commitChanges("commit " + c);
+            _shas[c] = Repository.log().iterator().next().getSha();
+        }
+        for (int b = 0; b < _branches; b += 1) {
+            Repository.branch("b" + b);
+            Repository.checkout("b" + b);
+            for (int c = 0; c < CHANGES; c += 1) {
+                commitChanges("branch b" + b + " commit " + c);
+            }
+            Repository.checkout("master");
+        }
+    }
+
+    /** @param message STRING
+     * Changes and adds CHANGES random files, and commits them. */
+    private static void commitChanges(String message) {
+        for (int i = 0; i < CHANGES; i += 1) {
+            edit(pick());
+            Repository.add(_last);
+        }
+        Repository.commit(message);
+    }
+
+    /** @return int
+     * Returns a random file number. */
+    private static int pick() {
+        return RANDOM.nextInt(_files);
+    }
+
+    /** @param i INT
+     * Gives file number I new random contents, and remembers its name
+     * as _last. */
+    private static void edit(int i) {
+        _last = "d" + (i % DIRS) + File.separator + "f" + i + ".txt";
+        byte[] contents = new byte[FILE_SIZE];
+        for (int j = 0; j < contents.length; j += 1) {
+            contents[j] = (byte) ('a' + RANDOM.nextInt(26));
+        }
+        File f = Repository.workFile(_last);
+        f.getParentFile().mkdirs();
+        Utils.writeContents(f, contents);
+    }
+
+    /** @return int
+     * @param args STRING[]
+     * @param i INT
+     * @param dflt INT
+     * Returns ARGS[I] as a number, or DFLT if it is missing. */
+    private static int arg(String[] args, int i, int dflt) {
+        return args.length > i ? Integer.parseInt(args[i]) : dflt;
+    }
+
+    /** Source of file contents, seeded so every run builds the same
+     * repository. */
+    private static final Random RANDOM = new Random(42);
+
+    /** Number of files. */
+    private static int _files;
+
+    /** Number of commits on master. */
+    private static int _commits;
+
+    /** Number of branches. */
+    private static int _branches;
+
+    /** Timed runs of each benchmark. */
+    private static int _iterations;
+
+    /** Runs of benchmarks so far, used to make names unique. */
+    private static int _n;
+
+    /** The file edit last changed. */
+    private static String _last;
+
+    /** The commit made for each of the generated history, by number. */
+    private static String[] _shas;
+}
@@ -1,70 +1,458 @@
 package gitlet;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.Serializable;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
 
 /** This class simply is the representation for the content within a file.
+ * A Blob knows nothing about the path it came from, so identical contents
+ * are stored once no matter how many files share them.
+ *
+ * On disk a Blob is a MAGIC int, a format byte and the content length,
+ * followed by the content itself, deflated or, when Config.BLOB_FORMAT is
+ * "raw", exactly as it was. A raw Blob is written out by copying straight
+ * from its file with FileChannel.transferTo, never passing through the
+ * heap. A CHUNKED Blob is a manifest made by the Chunker: its content is
+ * the concatenation of the Blobs it lists.
  * @author Parth Shisode */
-public class Blob implements Serializable {
+public class Blob {
 
     /** BLOB_FOLDER is a folder holding Blobs in /.gitlet. */
-    static final File BLOB_FOLDER = Utils.join(Main.DOT_GITLET, "blobs");
-
-    /** Create a Blob with these parameters.
-     * @param f FILE */
-    public Blob(File f) {
-        _info = Utils.readContents(f);
-        _bSha = Utils.sha1(_info);
-        _blobFile = f;
-
-        boolean c1 = Utils.plainFilenamesIn(BLOB_FOLDER) == null;
-
-        boolean saveCond = true;
-        if (c1) {
-            for (String blobID : Utils.plainFilenamesIn(BLOB_FOLDER)) {
-                Blob currB = Utils.readObject(Utils.join(BLOB_FOLDER,
-                        blobID), Blob.class);
-                if (currB.getSha().equals(_bSha)
-                        && currB.getBlobFile().equals(_blobFile)) {
-                    saveCond = false;
+    static final File BLOB_FOLDER = Utils.join(Repository.DOT_GITLET, "blobs");
+
+    /** The first four bytes of every stored Blob, "GLB1". */
+    static final int MAGIC = 0x474c4231;
+
+    /** Format byte for content stored as it is. */
+    static final byte RAW = 0;
+
+    /** Format byte for content compressed with deflate. */
+    static final byte DEFLATED = 1;
+
+    /** Format byte for a manifest of chunks: a count and the binary SHA1s
+     * of that many Blobs. */
+    static final byte CHUNKED = 2;
+
+    /** Size of the header before the content of a stored Blob. */
+    static final int HEADER = 4 + 1 + 8;
+
+    /** Size of the buffers used when streaming Blob contents. */
+    static final int BUF_SIZE = 1 << 16;
+
+    /** @return String
+     * @param f FILE
+     * Stores the contents of F as a Blob, unless an identical one is
+     * stored already, and returns its SHA1. F is read once, a buffer at a
+     * time, each buffer being hashed and written to a temporary file
+     * before the next is read, so memory use does not grow with the size
+     * of F. Files larger than Config.CHUNK_THRESHOLD are split into
+     * chunks by the Chunker instead. If F cannot be read, the temporary
+     * file is discarded. */
+    static String store(File f) {
+        long t = Trace.start();
+        long threshold = Config.chunkThreshold();
+        if (threshold > 0 && f.length() > threshold) {
+            String sha = Chunker.store(f);
+            Trace.end("store-chunked", t, f);
+            return sha;
+        }
+        Sink sink = new Sink(Config.rawBlobs() ? RAW : DEFLATED);
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUF_SIZE);
+        try (FileChannel in = FileChannel.open(f.toPath(),
+                StandardOpenOption.READ)) {
+            while (in.read(buf) != -1) {
+                buf.flip();
+                sink.write(buf);
+                buf.clear();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            sink.discard();
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        String sha = sink.finish();
+        Trace.end("store-blob", t, sink.length());
+        return sha;
+    }
+
+    /** @return String
+     * @param f FILE
+     * Returns the SHA1 of the contents of F, reading it a buffer at a
+     * time without storing it. */
+    static String hash(File f) {
+        long t = Trace.start();
+        MessageDigest md = sha1();
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUF_SIZE);
+        try (FileChannel in = FileChannel.open(f.toPath(),
+                StandardOpenOption.READ)) {
+            while (in.read(buf) != -1) {
+                buf.flip();
+                md.update(buf);
+                buf.clear();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        Trace.end("hash-file", t, f);
+        return Pack.toHex(md.digest());
+    }
+
+    /** @return MessageDigest
+     * Returns a new SHA-1 digest. */
+    static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** A Blob being written to a temporary file of the Transaction while
+     * its contents are hashed. Once finished it is handed to the
+     * Transaction, which is synchronized, to be renamed to its SHA1 when
+     * it commits, so Blobs saved at the same time by different threads
+     * never see each other's partial writes, and of two threads storing
+     * the same contents, the later one's file replaces the earlier's. */
+    static class Sink {
+        /** Starts a Blob stored in FORMAT.
+         * @param format BYTE */
+        Sink(byte format) {
+            _md = sha1();
+            _z = format == DEFLATED ? new Deflater() : null;
+            _zBuf = format == DEFLATED ? ByteBuffer.allocateDirect(BUF_SIZE)
+                    : null;
+            try {
+                _tmp = Transaction.tempFile("blob");
+                _out = FileChannel.open(_tmp.toPath(),
+                        StandardOpenOption.WRITE);
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).put(format).putLong(0);
+                header.flip();
+                writeFully(header);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+
+        /** @param buf BYTEBUFFER
+         * Hashes and writes everything remaining in BUF. */
+        void write(ByteBuffer buf) {
+            _length += buf.remaining();
+            _md.update(buf.duplicate());
+            try {
+                if (_z == null) {
+                    writeFully(buf);
+                    return;
+                }
+                _z.setInput(buf);
+                while (!_z.needsInput()) {
+                    deflate();
+                }
+                _z.setInput(new byte[0]);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+
+        /** @return long
+         * Returns the number of bytes written so far. */
+        long length() {
+            return _length;
+        }
+
+        /** @return String
+         * Finishes this Blob under the SHA1 of what was written and
+         * returns the SHA1. */
+        String finish() {
+            return finish(Pack.toHex(_md.digest()), _length);
+        }
+
+        /** @return String
+         * @param sha STRING
+         * @param length LONG
+         * Finishes this Blob, recording LENGTH as the length of its
+         * contents, and stores it as SHA, unless SHA is already stored,
+         * in which case it is discarded. Returns SHA. */
+        String finish(String sha, long length) {
+            try {
+                if (_z != null) {
+                    _z.finish();
+                    while (!_z.finished()) {
+                        deflate();
+                    }
+                    _z.end();
                 }
+                ByteBuffer len = ByteBuffer.allocate(8);
+                len.putLong(0, length);
+                _out.write(len, 5);
+                _out.close();
+                if (freshen(sha)) {
+                    _tmp.delete();
+                } else {
+                    Transaction.add(_tmp, Utils.join(BLOB_FOLDER, sha));
+                }
+                return sha;
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+
+        /** Abandons this Blob, deleting what was written. */
+        void discard() {
+            if (_z != null) {
+                _z.end();
+            }
+            try {
+                _out.close();
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
             }
+            _tmp.delete();
         }
-        if (saveCond) {
-            saveBlob();
+
+        /** Deflates as much as fits in _zBuf and writes it out. */
+        private void deflate() throws IOException {
+            _z.deflate(_zBuf);
+            _zBuf.flip();
+            writeFully(_zBuf);
+            _zBuf.clear();
         }
+
+        /** @param buf BYTEBUFFER
+         * Writes everything remaining in BUF to the temporary file. */
+        private void writeFully(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                _out.write(buf);
+            }
+        }
+
+        /** Digest of the contents written so far. */
+        private final MessageDigest _md;
+
+        /** Compresses the contents, or null if they are not deflated. */
+        private final Deflater _z;
+
+        /** Buffer for output of _z, or null. */
+        private final ByteBuffer _zBuf;
+
+        /** The temporary file being written. */
+        private File _tmp;
+
+        /** Channel writing _tmp. */
+        private FileChannel _out;
+
+        /** Number of bytes of contents written so far. */
+        private long _length;
     }
 
-    /** Creates a Blob within BLOB_FOLDER. */
-    public void saveBlob() {
-        File blobFile = Utils.join(BLOB_FOLDER, _bSha);
-        Utils.writeObject(blobFile, this);
+    /** @return File
+     * @param sha STRING
+     * Returns the file holding the Blob SHA if it is stored loose, which
+     * may still be in the Transaction. */
+    private static File file(String sha) {
+        return Transaction.find(Utils.join(BLOB_FOLDER, sha));
     }
 
-    /** @return byte[]
-     *  Getter method for _info. */
-    public byte[] getInfo() {
-        return _info;
+    /** @return boolean
+     * @param sha STRING
+     * Returns whether the Blob SHA is stored, loose or packed. */
+    static boolean exists(String sha) {
+        return file(sha).exists() || Pack.contains(sha);
+    }
+
+    /** @return boolean
+     * @param sha STRING
+     * Returns whether the Blob SHA is stored, as Collector.freshen does,
+     * for a caller about to use it rather than store it again. */
+    static boolean freshen(String sha) {
+        return Collector.freshen(file(sha), sha);
+    }
+
+    /** @return InputStream
+     * @param sha STRING
+     * Opens the stored Blob SHA and returns a stream of its contents,
+     * without reading the whole Blob into memory. */
+    static InputStream open(String sha) {
+        File blobFile = file(sha);
+        if (!blobFile.exists()) {
+            byte[] packed = Pack.read(sha);
+            if (packed == null) {
+                throw new IllegalArgumentException("No blob " + sha);
+            }
+            return new ByteArrayInputStream(packed);
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(blobFile), BUF_SIZE));
+            byte format = in.readInt() == MAGIC ? in.readByte() : -1;
+            if (format != RAW && format != DEFLATED && format != CHUNKED) {
+                in.close();
+                throw new IllegalArgumentException("corrupt blob " + sha);
+            }
+            in.readLong();
+            if (format == CHUNKED) {
+                List<String> chunks = chunks(in);
+                in.close();
+                return new SequenceInputStream(new Enumeration<>() {
+                    @Override
+                    public boolean hasMoreElements() {
+                        return _next < chunks.size();
+                    }
+
+                    @Override
+                    public InputStream nextElement() {
+                        _next += 1;
+                        return open(chunks.get(_next - 1));
+                    }
+
+                    /** Index of the chunk to open next. */
+                    private int _next = 0;
+                });
+            }
+            return format == RAW ? in : new InflaterInputStream(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @return byte
+     * @param sha STRING
+     * Returns the format byte of the Blob SHA if it is stored loose, or
+     * -1 if it is not. */
+    static byte format(String sha) {
+        File blobFile = file(sha);
+        if (!blobFile.exists()) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new FileInputStream(blobFile))) {
+            return in.readInt() == MAGIC ? in.readByte() : -1;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
     }
 
-    /** @return STRING
-     * Getter method for _bSha. */
-    public String getSha() {
-        return _bSha;
+    /** @return List<String>
+     * @param sha STRING
+     * Returns the chunks listed by the CHUNKED Blob SHA, which must be
+     * stored loose. */
+    static List<String> chunks(String sha) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file(sha))))) {
+            in.skipNBytes(HEADER);
+            return chunks(in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @return List<String>
+     * @param in DATAINPUTSTREAM
+     * Reads the list of chunks of a manifest from IN. */
+    private static List<String> chunks(DataInputStream in)
+            throws IOException {
+        List<String> res = new ArrayList<>();
+        byte[] sha = new byte[Pack.SHA_BYTES];
+        for (int n = in.readInt(); n > 0; n -= 1) {
+            in.readFully(sha);
+            res.add(Pack.toHex(sha));
+        }
+        return res;
     }
 
-    /** @return FILE
-     * Getter method for _blobFile. */
-    public File getBlobFile() {
-        return _blobFile;
+    /** @return byte[]
+     * @param sha STRING
+     * Returns the full contents of the stored Blob SHA, which must not be
+     * changed, from the ObjectCache if they are small enough to be kept
+     * there. */
+    static byte[] read(String sha) {
+        return ObjectCache.blob(sha);
     }
 
-    /** Represents the SHA1 hash string associated with the Blob's file. */
-    private final String _bSha;
+    /** @return byte[]
+     * @param sha STRING
+     * Reads the full contents of the stored Blob SHA. */
+    static byte[] readAll(String sha) {
+        long t = Trace.start();
+        try (InputStream in = open(sha)) {
+            byte[] res = in.readAllBytes();
+            Trace.end("read-blob", t, res.length);
+            return res;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
 
-    /** Represents the actual contents of the Blob's file as a byte[]. */
-    private final byte[] _info;
+    /** @param sha STRING
+     * @param dest FILE
+     * Streams the contents of the stored Blob SHA into DEST, creating
+     * its directory if needed. */
+    static void write(String sha, File dest) {
+        long t = Trace.start();
+        dest.getParentFile().mkdirs();
+        if (!transfer(sha, dest)) {
+            try (InputStream in = open(sha);
+                 OutputStream out = new FileOutputStream(dest)) {
+                byte[] buf = new byte[BUF_SIZE];
+                for (int n = in.read(buf); n != -1; n = in.read(buf)) {
+                    out.write(buf, 0, n);
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+        Trace.end("write-file", t, dest);
+    }
 
-    /** Represents the File this Blob is associated with. */
-    private final File _blobFile;
+    /** @return boolean
+     * @param sha STRING
+     * @param dest FILE
+     * If the Blob SHA is stored loose and RAW, copies its contents into
+     * DEST with FileChannel.transferTo, which lets the operating system
+     * move the bytes without copying them through the heap, and returns
+     * true. Otherwise returns false without touching DEST. */
+    private static boolean transfer(String sha, File dest) {
+        File blobFile = file(sha);
+        if (!blobFile.exists()) {
+            return false;
+        }
+        try (FileChannel in = FileChannel.open(blobFile.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining() && in.read(header) != -1) {
+                continue;
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC
+                    || header.get(4) != RAW) {
+                return false;
+            }
+            try (FileChannel out = FileChannel.open(dest.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long end = in.size();
+                for (long pos = HEADER; pos < end;) {
+                    pos += in.transferTo(pos, end - pos, out);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
 }
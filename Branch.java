@@ -7,7 +7,13 @@ import java.io.Serializable;
  * @author Parth Shisode */
 public class Branch implements Serializable {
     /** Folder holding Branches in /.gitlet. */
-    static final File BRANCH_FOLDER = Utils.join(Main.DOT_GITLET, "branches");
+    static final File BRANCH_FOLDER = Utils.join(Repository.DOT_GITLET,
+            "branches");
+
+    /** Holds the Branch of the current commit in BRANCH_FOLDER. */
+    static final File CURR_BRANCH_FILE = Utils.join(BRANCH_FOLDER,
+            "CURR_BRANCH");
+
     /**
      * Creates a new CommitObj with these parameters.
      * @param name String
@@ -41,10 +47,11 @@ public class Branch implements Serializable {
         return _commitSha;
     }
 
-    /** Creates a Branch within BRANCH_FOLDER. */
+    /** Creates a Branch within BRANCH_FOLDER, when the Transaction
+     * commits. */
     public void saveBranch() {
         File branchFile = Utils.join(BRANCH_FOLDER, _name);
-        Utils.writeObject(branchFile, this);
+        Transaction.write(branchFile, Utils.serialize(this));
     }
 
     /** The _name of the Branch, assigned by the user. */
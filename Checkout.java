@@ -0,0 +1,87 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** This class moves the working directory from the files of one commit to
+ * those of another, as branch checkout and reset do. The two Trees are
+ * diffed once, every file the switch would overwrite is checked before
+ * anything is touched, and then only the files which differ are removed
+ * or written, the writes spread over a fixed pool of threads.
+ * @author Parth Shisode */
+public class Checkout {
+
+    /** Number of threads writing files. */
+    static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** Fewer writes than this are done on the calling thread. */
+    static final int PARALLEL_MIN = 16;
+
+    /** @param from COMMITOBJ
+     * @param to COMMITOBJ
+     * Replaces the files tracked by FROM, the current commit, with those
+     * tracked by TO. Fails without changing anything if a file TO tracks
+     * is untracked in FROM and differs from TO's version. */
+    static void run(CommitObj from, CommitObj to) {
+        long t = Trace.start();
+        TreeMap<File, String[]> changes = new TreeMap<>();
+        Tree.diff(from.getTreeSha(), to.getTreeSha(), changes);
+        Trace.end("diff", t, 0);
+
+        for (Map.Entry<File, String[]> e : changes.entrySet()) {
+            File f = e.getKey();
+            String[] blobs = e.getValue();
+            if (blobs[0] == null && (f.isDirectory()
+                    || f.isFile() && !StatCache.sha(f).equals(blobs[1]))) {
+                throw new GitletException("There is an untracked file in"
+                        + " the way; delete it, or add and commit it first.");
+            }
+        }
+
+        List<Map.Entry<File, String[]>> writes = new ArrayList<>();
+        for (Map.Entry<File, String[]> e : changes.entrySet()) {
+            if (e.getValue()[1] == null) {
+                Repository.removeFile(e.getKey());
+            } else {
+                writes.add(e);
+            }
+        }
+        t = Trace.start();
+        write(writes);
+        Trace.end("write", t, 0);
+    }
+
+    /** @param writes LIST<MAP.ENTRY<FILE, STRING[]>>
+     * Writes the Blob each of WRITES has in its new commit to its file,
+     * in parallel once there are PARALLEL_MIN of them. */
+    private static void write(List<Map.Entry<File, String[]>> writes) {
+        if (writes.size() < PARALLEL_MIN) {
+            for (Map.Entry<File, String[]> e : writes) {
+                Blob.write(e.getValue()[1], e.getKey());
+            }
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (Map.Entry<File, String[]> e : writes) {
+                done.add(pool.submit(
+                    () -> Blob.write(e.getValue()[1], e.getKey())));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** This class stores large files as chunks, so that versions of a file
+ * which differ in a few places share most of their storage.
+ *
+ * Chunk boundaries are chosen by the content itself, as in FastCDC: a gear
+ * hash rolls over the bytes, and a chunk ends where the top bits of the
+ * hash are all zero. Inserting or deleting bytes therefore only moves the
+ * boundaries near the edit, and every other chunk is the same Blob as
+ * before. More bits must be zero until a chunk reaches AVG bytes and
+ * fewer after, which keeps chunk sizes close to AVG. Each chunk is stored
+ * as an ordinary Blob, and the file itself as a CHUNKED Blob listing them,
+ * under the SHA1 of the whole file.
+ * @author Parth Shisode */
+public class Chunker {
+
+    /** The smallest chunk, except at the end of a file. */
+    static final int MIN = 1 << 16;
+
+    /** The size chunks are aimed at. */
+    static final int AVG = 1 << 18;
+
+    /** The largest chunk. */
+    static final int MAX = 1 << 20;
+
+    /** @return String
+     * @param f FILE
+     * Stores F as chunks and a manifest in a single pass and returns the
+     * SHA1 of F. If F cannot be read, the chunk being written is
+     * discarded; the chunks already finished are ordinary Blobs, which gc
+     * removes if nothing comes to use them. */
+    static String store(File f) {
+        byte format = Config.rawBlobs() ? Blob.RAW : Blob.DEFLATED;
+        MessageDigest whole = Blob.sha1();
+        List<String> chunks = new ArrayList<>();
+        Blob.Sink chunk = new Blob.Sink(format);
+        long total = 0;
+        long h = 0;
+        ByteBuffer buf = ByteBuffer.allocateDirect(Blob.BUF_SIZE);
+        try (FileChannel in = FileChannel.open(f.toPath(),
+                StandardOpenOption.READ)) {
+            while (in.read(buf) != -1) {
+                buf.flip();
+                whole.update(buf.duplicate());
+                total += buf.remaining();
+                int start = buf.position();
+                long size = chunk.length();
+                for (int i = start; i < buf.limit(); i += 1) {
+                    h = (h << 1) + GEAR[buf.get(i) & 0xff];
+                    size += 1;
+                    if (size >= MAX || size >= MIN
+                            && (h & (size < AVG ? MASK_S : MASK_L)) == 0) {
+                        chunk.write(buf.duplicate().limit(i + 1)
+                                .position(start));
+                        chunks.add(chunk.finish());
+                        chunk = new Blob.Sink(format);
+                        start = i + 1;
+                        size = 0;
+                        h = 0;
+                    }
+                }
+                chunk.write(buf.duplicate().position(start));
+                buf.clear();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            chunk.discard();
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        if (chunk.length() > 0 || chunks.isEmpty()) {
+            chunks.add(chunk.finish());
+        } else {
+            chunk.discard();
+        }
+
+        ByteBuffer list = ByteBuffer.allocate(4
+                + chunks.size() * Pack.SHA_BYTES);
+        list.putInt(chunks.size());
+        for (String c : chunks) {
+            list.put(Pack.toBytes(c));
+        }
+        list.flip();
+        Blob.Sink manifest = new Blob.Sink(Blob.CHUNKED);
+        try {
+            manifest.write(list);
+        } catch (IllegalArgumentException e) {
+            manifest.discard();
+            throw e;
+        }
+        return manifest.finish(Pack.toHex(whole.digest()), total);
+    }
+
+    /** Boundary mask used before a chunk reaches AVG: two more bits than
+     * AVG calls for, taken from the top of the hash. */
+    private static final long MASK_S = -1L << (64 - 20);
+
+    /** Boundary mask used once a chunk reaches AVG: two fewer bits. */
+    private static final long MASK_L = -1L << (64 - 16);
+
+    /** A random value for each byte, fixed so that every run of gitlet
+     * chooses the same boundaries. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random r = new Random(0x6769746c6574L);
+        for (int i = 0; i < GEAR.length; i += 1) {
+            GEAR[i] = r.nextLong();
+        }
+    }
+}
@@ -0,0 +1,569 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** This class removes the commits, Trees and Blobs which no branch and
+ * no staged file can reach any more, as the gc command does.
+ *
+ * Every object there is gets a position in a sorted index of their SHA1s,
+ * and what each branch head reaches is marked in a BitSet over that
+ * index: its commits, their Trees, their Blobs and the chunks of chunked
+ * Blobs. Objects never change, so neither does the set a commit reaches.
+ * The bitmaps of the heads are therefore saved in BITMAP_FILE, run-length
+ * encoded, and the next gc copies the bitmap of any of those commits it
+ * meets instead of walking the history behind it again.
+ *
+ * Unreachable objects younger than the grace period are kept, since a
+ * command running at the same time may have just written or reused them.
+ * A loose object's age is that of its file; a packed object's is that of
+ * the pack or of its last line in RECENT_FILE, where freshen records the
+ * time each packed object was reused. The rest are deleted, the pack is
+ * rewritten without them, and the CommitGraph and CommitLog are rebuilt
+ * if any commit went.
+ * @author Parth Shisode */
+public class Collector {
+    /** Holds the bitmaps of the branch heads in /.gitlet. */
+    static final File BITMAP_FILE = Utils.join(Repository.DOT_GITLET,
+            "bitmaps");
+
+    /** The first four bytes of BITMAP_FILE, "GBM1". */
+    static final int BITMAP_MAGIC = 0x47424d31;
+
+    /** Lists, one "SHA1 MILLIS" line each, when packed objects were last
+     * reused, in /.gitlet. */
+    static final File RECENT_FILE = Utils.join(Repository.DOT_GITLET,
+            "recent");
+
+    /** @return boolean
+     * @param loose FILE, where the object SHA is kept when loose.
+     * @param sha STRING
+     * Returns whether the object SHA is stored, loose or packed, first
+     * setting the modification time of its loose file to now, or, if it
+     * is packed, appending the time to RECENT_FILE. A command which finds
+     * an object already stored, and uses it rather than writing it again,
+     * calls this instead of checking that it exists, so that a gc in
+     * another process keeps the object for the grace period even if
+     * nothing reached it before. */
+    static boolean freshen(File loose, String sha) {
+        long now = System.currentTimeMillis();
+        if (loose.setLastModified(now)) {
+            return true;
+        }
+        if (!Pack.contains(sha)) {
+            return false;
+        }
+        try (FileOutputStream out = new FileOutputStream(RECENT_FILE,
+                true)) {
+            out.write((sha + " " + now + "\n").getBytes(
+                    StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        return true;
+    }
+
+    /** @return Report
+     * @param heads MAP<STRING, STRING>, each branch and the commit at its
+     *              head.
+     * @param staged COLLECTION<STRING>, the Blobs of staged files.
+     * @param grace LONG, in seconds.
+     * @param dryRun BOOLEAN
+     * Finds everything HEADS and STAGED reach, and removes every other
+     * object older than GRACE, unless DRYRUN, and returns what was, or
+     * would have been, removed. */
+    static Report run(Map<String, String> heads, Collection<String> staged,
+                      long grace, boolean dryRun) {
+        Collector c = new Collector();
+        Map<String, Integer> counts = new TreeMap<>();
+        BitSet reachable = new BitSet(c._index.length);
+        for (Map.Entry<String, String> e : heads.entrySet()) {
+            BitSet bits = c.markHead(e.getValue());
+            counts.put(e.getKey(), bits.cardinality());
+            reachable.or(bits);
+        }
+        for (String sha : staged) {
+            c.markBlob(sha, reachable);
+        }
+
+        long cutoff = System.currentTimeMillis() - grace * 1000;
+        long packTime = Pack.PACK_FILE.lastModified();
+        Map<String, Long> recent = new HashMap<>();
+        long seen = readRecent(0, recent);
+        List<String> removed = new ArrayList<>();
+        Map<String, Byte> packed = new TreeMap<>();
+        long bytes = 0;
+        int kept = 0;
+        boolean commits = false;
+        for (int i = reachable.nextClearBit(0); i < c._index.length;
+             i = reachable.nextClearBit(i + 1)) {
+            String sha = c._index[i];
+            File f = Utils.join(folder(c._types[i]), sha);
+            boolean loose = f.exists();
+            long time = loose ? f.lastModified()
+                    : Math.max(packTime, recent.getOrDefault(sha, 0L));
+            if (time > cutoff) {
+                kept += 1;
+            } else if (!loose) {
+                packed.put(sha, c._types[i]);
+            } else {
+                commits |= c._types[i] == Pack.COMMIT;
+                removed.add(name(c._types[i]) + " " + sha);
+                bytes += f.length();
+                if (!dryRun) {
+                    f.delete();
+                }
+            }
+        }
+        Map<String, Long> late = new HashMap<>();
+        readRecent(seen, late);
+        // Packed objects reused while this ran are kept as well.
+        int reused = packed.size();
+        packed.keySet().removeAll(late.keySet());
+        kept += reused - packed.size();
+        for (Map.Entry<String, Byte> e : packed.entrySet()) {
+            commits |= e.getValue() == Pack.COMMIT;
+            removed.add(name(e.getValue()) + " " + e.getKey());
+            bytes += Pack.size(e.getKey());
+        }
+
+        if (!dryRun) {
+            if (!packed.isEmpty()) {
+                Pack.repack(packed.keySet());
+            }
+            trimRecent(cutoff);
+            if (commits) {
+                CommitGraph.rebuild();
+                CommitLog.rebuild();
+            }
+            c.save(reachable);
+            ObjectCache.clear();
+        }
+        return new Report(counts, reachable.cardinality(), removed, bytes,
+                kept);
+    }
+
+    /** Indexes every object there is and reads the saved bitmaps. */
+    private Collector() {
+        TreeMap<String, Byte> all = new TreeMap<>();
+        for (byte type : new byte[] {Pack.BLOB, Pack.COMMIT, Pack.TREE}) {
+            for (String sha : Pack.list(type)) {
+                all.put(sha, type);
+            }
+            for (String sha : Utils.plainFilenamesIn(folder(type))) {
+                if (sha.length() == 2 * Pack.SHA_BYTES) {
+                    all.put(sha, type);
+                }
+            }
+        }
+        _index = all.keySet().toArray(new String[0]);
+        _types = new byte[_index.length];
+        int i = 0;
+        for (byte type : all.values()) {
+            _types[i] = type;
+            i += 1;
+        }
+        load();
+    }
+
+    /** @return BitSet
+     * @param head STRING
+     * Returns the bitmap of everything the commit HEAD reaches. */
+    private BitSet markHead(String head) {
+        BitSet bits = _heads.get(head);
+        if (bits != null) {
+            return bits;
+        }
+        bits = new BitSet(_index.length);
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        stack.push(head);
+        while (!stack.isEmpty()) {
+            String sha = stack.pop();
+            int i = position(sha);
+            if (i < 0 || bits.get(i)) {
+                continue;
+            }
+            BitSet known = _heads.containsKey(sha) ? _heads.get(sha)
+                    : _saved.get(sha);
+            if (known != null) {
+                bits.or(known);
+                continue;
+            }
+            bits.set(i);
+            CommitObj c = CommitObj.read(sha);
+            BitSet b = bits;
+            Tree.walk(c.getTreeSha(), t -> mark(t, b),
+                t -> markBlob(t, b));
+            for (String p : new String[] {c.getParent1Sha(),
+                c.getParent2Sha()}) {
+                if (p != null) {
+                    stack.push(p);
+                }
+            }
+        }
+        _heads.put(head, bits);
+        return bits;
+    }
+
+    /** @param sha STRING
+     * @param bits BITSET
+     * Marks the Blob SHA in BITS, and its chunks if it is chunked. */
+    private void markBlob(String sha, BitSet bits) {
+        if (mark(sha, bits) && Blob.format(sha) == Blob.CHUNKED) {
+            for (String chunk : Blob.chunks(sha)) {
+                mark(chunk, bits);
+            }
+        }
+    }
+
+    /** @return boolean
+     * @param sha STRING
+     * @param bits BITSET
+     * Marks the object SHA in BITS and returns true, or returns false if
+     * it was marked already or does not exist. */
+    private boolean mark(String sha, BitSet bits) {
+        int i = position(sha);
+        if (i < 0 || bits.get(i)) {
+            return false;
+        }
+        bits.set(i);
+        return true;
+    }
+
+    /** @return int
+     * @param sha STRING
+     * Returns the position of SHA in _index, or a negative number. */
+    private int position(String sha) {
+        return Arrays.binarySearch(_index, sha);
+    }
+
+    /** Reads the bitmaps in BITMAP_FILE into _saved, translated to
+     * positions in _index. Objects no longer there are skipped, and a file
+     * which is cut short or corrupt is treated as holding no bitmaps. */
+    private void load() {
+        if (!BITMAP_FILE.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(BITMAP_FILE)))) {
+            if (in.readInt() != BITMAP_MAGIC) {
+                return;
+            }
+            byte[] sha = new byte[Pack.SHA_BYTES];
+            int count = in.readInt();
+            if (count < 0 || count > BITMAP_FILE.length() / Pack.SHA_BYTES) {
+                throw new IOException("corrupt " + BITMAP_FILE);
+            }
+            int[] moved = new int[count];
+            for (int i = 0; i < moved.length; i += 1) {
+                in.readFully(sha);
+                moved[i] = position(Pack.toHex(sha));
+            }
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                in.readFully(sha);
+                BitSet bits = new BitSet(_index.length);
+                int pos = 0;
+                for (int runs = in.readInt(); runs > 0; runs -= 1) {
+                    pos += readVarint(in);
+                    int end = pos + readVarint(in);
+                    if (pos < 0 || end < pos || end > moved.length) {
+                        throw new IOException("corrupt " + BITMAP_FILE);
+                    }
+                    for (; pos < end; pos += 1) {
+                        if (moved[pos] >= 0) {
+                            bits.set(moved[pos]);
+                        }
+                    }
+                }
+                _saved.put(Pack.toHex(sha), bits);
+            }
+        } catch (IOException e) {
+            _saved.clear();
+        }
+    }
+
+    /** @return long
+     * @param from LONG
+     * @param times MAP<STRING, LONG>
+     * Adds to TIMES the latest time RECENT_FILE gives each object in the
+     * whole lines from offset FROM on, and returns the offset after the
+     * last of them. Lines which are cut short or garbled are skipped. */
+    private static long readRecent(long from, Map<String, Long> times) {
+        if (!RECENT_FILE.exists()) {
+            return from;
+        }
+        byte[] data;
+        try (RandomAccessFile in = new RandomAccessFile(RECENT_FILE, "r")) {
+            long len = in.length();
+            if (len <= from) {
+                return from;
+            }
+            data = new byte[(int) Math.min(len - from, Integer.MAX_VALUE)];
+            in.seek(from);
+            in.readFully(data);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        int start = 0;
+        for (int i = 0; i < data.length; i += 1) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            String[] line = new String(data, start, i - start,
+                    StandardCharsets.UTF_8).split(" ");
+            start = i + 1;
+            if (line.length != 2 || line[0].length() != 2 * Pack.SHA_BYTES) {
+                continue;
+            }
+            try {
+                times.merge(line[0], Long.parseLong(line[1]), Math::max);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+        }
+        return from + start;
+    }
+
+    /** @param cutoff LONG
+     * Rewrites RECENT_FILE with only the times after CUTOFF, which are
+     * the only ones a later gc can use. Lines appended while the new file
+     * is written are copied over just before it replaces the old one. */
+    private static void trimRecent(long cutoff) {
+        Map<String, Long> times = new TreeMap<>();
+        long end = readRecent(0, times);
+        if (end == 0) {
+            return;
+        }
+        File tmp = Utils.join(Repository.DOT_GITLET, "recent.tmp");
+        try {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp),
+                    StandardCharsets.UTF_8)) {
+                readRecent(end, times);
+                for (Map.Entry<String, Long> e : times.entrySet()) {
+                    if (e.getValue() > cutoff) {
+                        out.write(e.getKey() + " " + e.getValue() + "\n");
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), RECENT_FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @param reachable BITSET
+     * Writes the bitmaps of this run's heads to BITMAP_FILE, over an index
+     * of just the REACHABLE objects. */
+    private void save(BitSet reachable) {
+        int[] rank = new int[_index.length];
+        int n = 0;
+        for (int i = 0; i < _index.length; i += 1) {
+            rank[i] = n;
+            if (reachable.get(i)) {
+                n += 1;
+            }
+        }
+        File tmp = Utils.join(Repository.DOT_GITLET, "bitmaps.tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(BITMAP_MAGIC);
+                out.writeInt(n);
+                for (int i = reachable.nextSetBit(0); i >= 0;
+                     i = reachable.nextSetBit(i + 1)) {
+                    out.write(Pack.toBytes(_index[i]));
+                }
+                out.writeInt(_heads.size());
+                for (Map.Entry<String, BitSet> e : _heads.entrySet()) {
+                    out.write(Pack.toBytes(e.getKey()));
+                    writeRuns(out, e.getValue(), rank);
+                }
+            }
+            Files.move(tmp.toPath(), BITMAP_FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @param out DATAOUTPUTSTREAM
+     * @param bits BITSET
+     * @param rank INT[], the position in the saved index of each object.
+     * Writes BITS, all of whose objects are reachable, as the number of
+     * runs of set bits, followed by the gap before each run and its
+     * length in the saved index, as varints. */
+    private static void writeRuns(DataOutputStream out, BitSet bits,
+                                  int[] rank) throws IOException {
+        ByteArrayOutputStream runs = new ByteArrayOutputStream();
+        int count = 0;
+        int pos = 0;
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i)) {
+            int end = bits.nextClearBit(i);
+            writeVarint(runs, rank[i] - pos);
+            writeVarint(runs, end - i);
+            pos = rank[i] + end - i;
+            count += 1;
+            i = end;
+        }
+        out.writeInt(count);
+        runs.writeTo(out);
+    }
+
+    /** @param out BYTEARRAYOUTPUTSTREAM
+     * @param v INT, not negative.
+     * Writes V to OUT seven bits at a time, low bits first. */
+    private static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7f) != 0) {
+            out.write((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    /** @return int
+     * @param in INPUTSTREAM
+     * Reads a varint written by writeVarint. */
+    private static int readVarint(InputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("truncated bitmap");
+            }
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+    }
+
+    /** @return File
+     * @param type BYTE
+     * Returns the folder holding loose objects of TYPE. */
+    private static File folder(byte type) {
+        switch (type) {
+        case Pack.BLOB:
+            return Blob.BLOB_FOLDER;
+        case Pack.COMMIT:
+            return CommitObj.COMMIT_FOLDER;
+        default:
+            return Tree.TREE_FOLDER;
+        }
+    }
+
+    /** @return String
+     * @param type BYTE
+     * Returns the name of objects of TYPE. */
+    private static String name(byte type) {
+        switch (type) {
+        case Pack.BLOB:
+            return "blob";
+        case Pack.COMMIT:
+            return "commit";
+        default:
+            return "tree";
+        }
+    }
+
+    /** This class is what gc found: how much each branch reaches, and
+     * the objects removed, or that would be with --dry-run. */
+    public static class Report {
+        /** A Report of these parameters.
+         * @param branches MAP<STRING, INTEGER>
+         * @param reachable INT
+         * @param removed LIST<STRING>
+         * @param bytes LONG
+         * @param kept INT */
+        Report(Map<String, Integer> branches, int reachable,
+               List<String> removed, long bytes, int kept) {
+            _branches = branches;
+            _reachable = reachable;
+            _removed = removed;
+            _bytes = bytes;
+            _kept = kept;
+        }
+
+        /** @return Map<String, Integer>
+         * Getter method for _branches. */
+        public Map<String, Integer> getBranches() {
+            return _branches;
+        }
+
+        /** @return int
+         * Getter method for _reachable. */
+        public int getReachable() {
+            return _reachable;
+        }
+
+        /** @return List<String>
+         * Getter method for _removed. */
+        public List<String> getRemoved() {
+            return _removed;
+        }
+
+        /** @return long
+         * Getter method for _bytes. */
+        public long getBytes() {
+            return _bytes;
+        }
+
+        /** @return int
+         * Getter method for _kept. */
+        public int getKept() {
+            return _kept;
+        }
+
+        /** The number of objects each branch reaches. */
+        private final Map<String, Integer> _branches;
+
+        /** The number of objects anything reaches. */
+        private final int _reachable;
+
+        /** The type and SHA1 of each object removed. */
+        private final List<String> _removed;
+
+        /** The space the removed objects took up. */
+        private final long _bytes;
+
+        /** The number of unreachable objects kept for the grace period. */
+        private final int _kept;
+    }
+
+    /** The SHA1 of every object, sorted. */
+    private final String[] _index;
+
+    /** The type of each object in _index. */
+    private final byte[] _types;
+
+    /** The bitmap of each commit saved by the last gc. */
+    private final Map<String, BitSet> _saved = new HashMap<>();
+
+    /** The bitmap of each head marked by this gc. */
+    private final Map<String, BitSet> _heads = new TreeMap<>();
+}
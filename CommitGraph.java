@@ -0,0 +1,413 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/** This class keeps the shape of the commit history in GRAPH_FILE, so
+ * that walking it never needs to read a CommitObj.
+ *
+ * GRAPH_FILE is a GRAPH_MAGIC int and the number of sorted records,
+ * followed by fixed-width records of a commit's SHA1, its two parents'
+ * SHA1s (zeros for none), its generation number and its timestamp. The
+ * sorted records come first and are found by binary search; commits made
+ * since are appended after them and scanned, until there are more than
+ * TAIL_MAX of them and the whole file is sorted again. The generation
+ * number of a commit is one more than the largest of its parents', so a
+ * commit can never be an ancestor of one with a smaller number.
+ *
+ * GRAPH_FILE is only ever written holding the Transaction's lock: by a
+ * commit, by gc, or by a reader which finds the file or a commit missing
+ * and takes the lock to repair it. Otherwise readers only map it.
+ * @author Parth Shisode */
+public class CommitGraph {
+    /** The file holding the commit graph in /.gitlet. */
+    static final File GRAPH_FILE = Utils.join(Repository.DOT_GITLET,
+            "commit-graph");
+
+    /** The first four bytes of GRAPH_FILE, "GCG1". */
+    static final int GRAPH_MAGIC = 0x47434731;
+
+    /** Size of the header of GRAPH_FILE. */
+    static final int HEADER = 8;
+
+    /** Size of one record: three binary SHA1s, an int and a long. */
+    static final int RECORD = 3 * Pack.SHA_BYTES + 4 + 8;
+
+    /** The most unsorted records kept before the file is sorted again. */
+    static final int TAIL_MAX = 128;
+
+    /** @return String
+     * @param sha STRING
+     * Returns the first parent of commit SHA, or null. */
+    static String parent1(String sha) {
+        int pos = record(sha);
+        return shaAt(pos + Pack.SHA_BYTES);
+    }
+
+    /** @return String
+     * @param sha STRING
+     * Returns the second parent of commit SHA, or null. */
+    static String parent2(String sha) {
+        int pos = record(sha);
+        return shaAt(pos + 2 * Pack.SHA_BYTES);
+    }
+
+    /** @return int
+     * @param sha STRING
+     * Returns the generation number of commit SHA. */
+    static int generation(String sha) {
+        int pos = record(sha);
+        return _map.getInt(pos + 3 * Pack.SHA_BYTES);
+    }
+
+    /** @return long
+     * @param sha STRING
+     * Returns the timestamp of commit SHA. */
+    static long timestamp(String sha) {
+        int pos = record(sha);
+        return _map.getLong(pos + 3 * Pack.SHA_BYTES + 4);
+    }
+
+    /** @return Iterable<String>
+     * @param sha STRING
+     * Returns commit SHA followed by its first parent, that commit's first
+     * parent, and so on back to the initial commit. Each parent is only
+     * looked up when it is asked for. */
+    static Iterable<String> firstParents(String sha) {
+        return () -> new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return _next != null;
+            }
+
+            @Override
+            public String next() {
+                if (_next == null) {
+                    throw new NoSuchElementException();
+                }
+                String res = _next;
+                _next = parent1(res);
+                return res;
+            }
+
+            /** The commit next() will return, or null. */
+            private String _next = sha;
+        };
+    }
+
+    /** @return List<String>
+     * @param prefix STRING
+     * Returns the SHA1 of every commit starting with PREFIX, a string of
+     * lower-case hex digits. The sorted records are binary searched for
+     * the first SHA1 not below PREFIX, so this takes time logarithmic in
+     * the number of commits plus the length of the unsorted tail. */
+    static List<String> withPrefix(String prefix) {
+        List<String> res = new ArrayList<>();
+        if (!prefix.matches("[0-9a-f]{1,40}")) {
+            return res;
+        }
+        load();
+        StringBuilder low = new StringBuilder(prefix);
+        while (low.length() < 2 * Pack.SHA_BYTES) {
+            low.append('0');
+        }
+        byte[] key = Pack.toBytes(low.toString());
+        int lo = 0;
+        int hi = _sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(HEADER + mid * RECORD, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < _sorted; i += 1) {
+            String sha = shaAt(HEADER + i * RECORD);
+            if (!sha.startsWith(prefix)) {
+                break;
+            }
+            res.add(sha);
+        }
+        for (int i = _sorted; i < _count; i += 1) {
+            String sha = shaAt(HEADER + i * RECORD);
+            if (sha.startsWith(prefix)) {
+                res.add(sha);
+            }
+        }
+        return res;
+    }
+
+    /** @param c COMMITOBJ
+     * Adds C to the graph, if it is not there already. The Transaction's
+     * lock must be held. */
+    static void add(CommitObj c) {
+        if (find(c.getSha()) < 0) {
+            append(c);
+        }
+    }
+
+    /** Rewrites GRAPH_FILE from the commits there are now, after some have
+     * been deleted. The Transaction's lock must be held. */
+    static void rebuild() {
+        GRAPH_FILE.delete();
+        _map = null;
+        load();
+    }
+
+    /** @return int
+     * @param sha STRING
+     * Returns the position of the record for commit SHA, first adding it
+     * and any of its ancestors missing from the graph, holding the
+     * Transaction's lock. */
+    private static int record(String sha) {
+        int pos = find(sha);
+        if (pos >= 0) {
+            return pos;
+        }
+        return Transaction.locked(() -> {
+            ArrayDeque<CommitObj> stack = new ArrayDeque<>();
+            stack.push(CommitObj.read(sha));
+            while (!stack.isEmpty()) {
+                CommitObj c = stack.peek();
+                boolean ready = true;
+                for (String p : new String[] {c.getParent1Sha(),
+                    c.getParent2Sha()}) {
+                    if (p != null && find(p) < 0) {
+                        stack.push(CommitObj.read(p));
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    stack.pop();
+                    if (find(c.getSha()) < 0) {
+                        append(c);
+                    }
+                }
+            }
+            return find(sha);
+        });
+    }
+
+    /** @param c COMMITOBJ
+     * Appends a record for C, whose parents must already be in the graph,
+     * and sorts the file again if the unsorted tail has grown too long. */
+    private static void append(CommitObj c) {
+        int gen = 0;
+        for (String p : new String[] {c.getParent1Sha(),
+            c.getParent2Sha()}) {
+            if (p != null) {
+                gen = Math.max(gen, generation(p));
+            }
+        }
+        ByteBuffer rec = ByteBuffer.allocate(RECORD);
+        rec.put(Pack.toBytes(c.getSha()));
+        rec.put(toBytes(c.getParent1Sha()));
+        rec.put(toBytes(c.getParent2Sha()));
+        rec.putInt(gen + 1);
+        rec.putLong(c.getTimestamp());
+        rec.flip();
+
+        load();
+        try (FileChannel ch = FileChannel.open(GRAPH_FILE.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(rec);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _map = null;
+        load();
+        if (_count - _sorted > TAIL_MAX) {
+            compact();
+        }
+    }
+
+    /** Rewrites GRAPH_FILE with every record sorted. */
+    private static void compact() {
+        List<byte[]> records = new ArrayList<>();
+        for (int i = 0; i < _count; i += 1) {
+            byte[] rec = new byte[RECORD];
+            _map.get(HEADER + i * RECORD, rec);
+            records.add(rec);
+        }
+        records.sort((a, b) -> Arrays.compareUnsigned(a, 0, Pack.SHA_BYTES,
+                b, 0, Pack.SHA_BYTES));
+        write(records);
+    }
+
+    /** @param records LIST<BYTE[]>
+     * Replaces GRAPH_FILE with RECORDS, which must be sorted. */
+    private static void write(List<byte[]> records) {
+        try {
+            File tmp = File.createTempFile("commit-graph", ".tmp",
+                    Repository.DOT_GITLET);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(GRAPH_MAGIC);
+                out.writeInt(records.size());
+                for (byte[] rec : records) {
+                    out.write(rec);
+                }
+            }
+            Files.move(tmp.toPath(), GRAPH_FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _map = null;
+    }
+
+    /** @return int
+     * @param sha STRING
+     * Returns the position of the record for commit SHA, or -1. */
+    private static int find(String sha) {
+        load();
+        byte[] key = Pack.toBytes(sha);
+        int lo = 0;
+        int hi = _sorted - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int pos = HEADER + mid * RECORD;
+            int cmp = compare(pos, key);
+            if (cmp == 0) {
+                return pos;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        for (int i = _sorted; i < _count; i += 1) {
+            int pos = HEADER + i * RECORD;
+            if (compare(pos, key) == 0) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    /** Maps GRAPH_FILE into memory, unless the current mapping still
+     * covers the whole file. If GRAPH_FILE does not exist yet, it is
+     * created, holding the Transaction's lock, with every commit there
+     * is, so that withPrefix sees commits made before it did. A file
+     * whose header does not fit its length is repaired first. */
+    private static void load() {
+        if (!GRAPH_FILE.exists()) {
+            Transaction.locked(() -> {
+                if (!GRAPH_FILE.exists()) {
+                    write(new ArrayList<>());
+                    for (String sha : CommitObj.allShas()) {
+                        record(sha);
+                    }
+                }
+            });
+        }
+        if (_map != null && _map.capacity() == GRAPH_FILE.length()) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(GRAPH_FILE.toPath(),
+                StandardOpenOption.READ)) {
+            _map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        int size = _map.capacity();
+        if (size < HEADER || _map.getInt(0) != GRAPH_MAGIC
+                || (size - HEADER) % RECORD != 0 || _map.getInt(4) < 0
+                || _map.getInt(4) > (size - HEADER) / RECORD) {
+            repair();
+            _map = null;
+            load();
+            return;
+        }
+        _sorted = _map.getInt(4);
+        _count = (size - HEADER) / RECORD;
+    }
+
+    /** Cuts GRAPH_FILE back to its last whole record, holding the
+     * Transaction's lock, or rebuilds it if even its header is wrong. A
+     * record torn by a crash would otherwise put every record appended
+     * after it out of line. The file is checked again under the lock,
+     * since what a reader saw may have been an append still going on. */
+    private static void repair() {
+        Transaction.locked(() -> {
+            try (FileChannel ch = FileChannel.open(GRAPH_FILE.toPath(),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer head = ByteBuffer.allocate(HEADER);
+                while (head.hasRemaining() && ch.read(head) != -1) {
+                    continue;
+                }
+                long records = (ch.size() - HEADER) / RECORD;
+                if (!head.hasRemaining() && head.getInt(0) == GRAPH_MAGIC
+                        && head.getInt(4) >= 0 && head.getInt(4) <= records) {
+                    ch.truncate(HEADER + records * RECORD);
+                    return;
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+            rebuild();
+        });
+    }
+
+    /** @return int
+     * @param pos INT
+     * @param key BYTE[]
+     * Compares the binary SHA1 at POS in the map with KEY. */
+    private static int compare(int pos, byte[] key) {
+        for (int i = 0; i < Pack.SHA_BYTES; i += 1) {
+            int a = _map.get(pos + i) & 0xff;
+            int b = key[i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    /** @return String
+     * @param pos INT
+     * Returns the SHA1 at POS in the map, or null if it is all zeros. */
+    private static String shaAt(int pos) {
+        byte[] sha = new byte[Pack.SHA_BYTES];
+        _map.get(pos, sha);
+        for (byte b : sha) {
+            if (b != 0) {
+                return Pack.toHex(sha);
+            }
+        }
+        return null;
+    }
+
+    /** @return byte[]
+     * @param sha STRING
+     * Converts SHA to binary, with null as all zeros. */
+    private static byte[] toBytes(String sha) {
+        return sha == null ? new byte[Pack.SHA_BYTES] : Pack.toBytes(sha);
+    }
+
+    /** The memory-mapped GRAPH_FILE, or null if it has not been mapped. */
+    private static MappedByteBuffer _map;
+
+    /** Number of sorted records at the start of GRAPH_FILE. */
+    private static int _sorted;
+
+    /** Number of records in GRAPH_FILE. */
+    private static int _count;
+}
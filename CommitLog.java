@@ -0,0 +1,443 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/** This class keeps the SHA1, parents, date and message of every commit in
+ * LOG_FILE, so that global-log and find never need to read a CommitObj.
+ *
+ * LOG_FILE is append-only: each commit adds one record, a length followed
+ * by its fields. Records are named by their offset in the file. Beside it,
+ * INDEX_FOLDER holds posting files of offsets, appended to as records are:
+ * one per distinct message, named by the SHA1 of the message, for exact
+ * queries, and one per three-byte sequence (trigram) of the UTF-8 message,
+ * for substring queries. A substring query reads the postings of each of
+ * its trigrams and checks only the records found in all of them.
+ *
+ * LOG_FILE and INDEX_FOLDER are only ever written holding the
+ * Transaction's lock, so offsets always match the log they were taken
+ * from. LOG_FILE is mapped whole, so it may not grow past 2 GiB.
+ * @author Parth Shisode */
+public class CommitLog {
+    /** The file holding the commit metadata log in /.gitlet. */
+    static final File LOG_FILE = Utils.join(Repository.DOT_GITLET,
+            "commit-log");
+
+    /** The folder holding the message index in /.gitlet. */
+    static final File INDEX_FOLDER = Utils.join(Repository.DOT_GITLET,
+            "msg-index");
+
+    /** The folder of INDEX_FOLDER holding postings of whole messages. */
+    static final File EXACT_FOLDER = Utils.join(INDEX_FOLDER, "exact");
+
+    /** Length of the byte sequences indexed for substring queries. */
+    static final int GRAM = 3;
+
+    /** @param c COMMITOBJ
+     * Appends the record for C, which has just been saved, to LOG_FILE
+     * and indexes its message. If LOG_FILE does not exist yet, it is
+     * rebuilt from every commit instead, which includes C. The
+     * Transaction's lock must be held. */
+    static void add(CommitObj c) {
+        if (!LOG_FILE.exists()) {
+            rebuild();
+            return;
+        }
+        append(c);
+    }
+
+    /** Rewrites LOG_FILE and INDEX_FOLDER from every commit there is,
+     * oldest first, breaking ties between commits made in the same second
+     * by generation number. The Transaction's lock must be held. */
+    static void rebuild() {
+        LOG_FILE.delete();
+        deleteAll(INDEX_FOLDER);
+        _map = null;
+        List<CommitObj> commits = new ArrayList<>();
+        for (String sha : CommitObj.allShas()) {
+            commits.add(CommitObj.read(sha));
+        }
+        commits.sort(Comparator.comparingLong(CommitObj::getTimestamp)
+                .thenComparingInt(c -> CommitGraph.generation(c.getSha())));
+        try {
+            LOG_FILE.createNewFile();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        for (CommitObj c : commits) {
+            append(c);
+        }
+    }
+
+    /** @return Iterable<Entry>
+     * Returns every commit in LOG_FILE, in the order they were made. */
+    static Iterable<Entry> entries() {
+        MappedByteBuffer map = load();
+        return () -> new Iterator<Entry>() {
+            @Override
+            public boolean hasNext() {
+                return _pos < _end;
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry e = readAt(map, _pos);
+                _pos += 4 + map.getInt(_pos);
+                return e;
+            }
+
+            /** Offset of the next record. */
+            private int _pos = 0;
+
+            /** Length of LOG_FILE when the iteration began. */
+            private final int _end = map.capacity();
+        };
+    }
+
+    /** @return List<Entry>
+     * @param m STRING
+     * Returns every commit whose message is exactly M, oldest first. */
+    static List<Entry> find(String m) {
+        MappedByteBuffer map = load();
+        List<Entry> res = new ArrayList<>();
+        for (int off : postings(exactFile(m))) {
+            Entry e = readAt(map, off);
+            if (e.getMessage().equals(m)) {
+                res.add(e);
+            }
+        }
+        return res;
+    }
+
+    /** @return List<Entry>
+     * @param s STRING
+     * Returns every commit whose message contains S, oldest first. When S
+     * is shorter than GRAM bytes, it has no trigrams to look up, and the
+     * whole log is scanned instead. */
+    static List<Entry> search(String s) {
+        MappedByteBuffer map = load();
+        List<Entry> res = new ArrayList<>();
+        TreeSet<String> grams = grams(s);
+        if (grams.isEmpty()) {
+            for (Entry e : entries()) {
+                if (e.getMessage().contains(s)) {
+                    res.add(e);
+                }
+            }
+            return res;
+        }
+        int[] offs = null;
+        for (String g : grams) {
+            int[] p = postings(gramFile(g));
+            offs = offs == null ? p : intersect(offs, p);
+            if (offs.length == 0) {
+                return res;
+            }
+        }
+        for (int off : offs) {
+            Entry e = readAt(map, off);
+            if (e.getMessage().contains(s)) {
+                res.add(e);
+            }
+        }
+        return res;
+    }
+
+    /** @param c COMMITOBJ
+     * Appends the record for C to LOG_FILE and adds its offset to the
+     * postings for its message. */
+    private static void append(CommitObj c) {
+        byte[] msg = c.getMessage().getBytes(StandardCharsets.UTF_8);
+        byte[] date = c.getDate().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer rec = ByteBuffer.allocate(4 + 3 * Pack.SHA_BYTES + 8
+                + 4 + date.length + 4 + msg.length);
+        rec.putInt(rec.capacity() - 4);
+        rec.put(Pack.toBytes(c.getSha()));
+        rec.put(toBytes(c.getParent1Sha()));
+        rec.put(toBytes(c.getParent2Sha()));
+        rec.putLong(c.getTimestamp());
+        rec.putInt(date.length);
+        rec.put(date);
+        rec.putInt(msg.length);
+        rec.put(msg);
+        rec.flip();
+
+        long off = LOG_FILE.length();
+        if (off + rec.remaining() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("commit-log has reached 2 GiB");
+        }
+        try (FileChannel ch = FileChannel.open(LOG_FILE.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(rec);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _map = null;
+
+        addPosting(exactFile(c.getMessage()), (int) off);
+        for (String g : grams(c.getMessage())) {
+            addPosting(gramFile(g), (int) off);
+        }
+    }
+
+    /** @return Entry
+     * @param map MAPPEDBYTEBUFFER, a mapping of LOG_FILE from load().
+     * @param off INT
+     * Returns the record at offset OFF of MAP. */
+    private static Entry readAt(MappedByteBuffer map, int off) {
+        ByteBuffer rec = map.duplicate();
+        rec.position(off + 4);
+        byte[] sha = new byte[Pack.SHA_BYTES];
+        rec.get(sha);
+        String cSha = Pack.toHex(sha);
+        String p1 = shaAt(rec);
+        String p2 = shaAt(rec);
+        long time = rec.getLong();
+        String date = stringAt(rec);
+        String msg = stringAt(rec);
+        return new Entry(cSha, p1, p2, time, date, msg);
+    }
+
+    /** @return MappedByteBuffer
+     * Maps LOG_FILE into memory, rebuilding it holding the Transaction's
+     * lock if it does not exist, unless the current mapping still covers
+     * the whole file, and returns the mapping. Callers read only the
+     * mapping returned, which stays valid after a later append sets _map
+     * to null. */
+    private static MappedByteBuffer load() {
+        if (!LOG_FILE.exists()) {
+            Transaction.locked(() -> {
+                if (!LOG_FILE.exists()) {
+                    rebuild();
+                }
+            });
+        }
+        MappedByteBuffer map = _map;
+        if (map != null && map.capacity() == LOG_FILE.length()) {
+            return map;
+        }
+        try (FileChannel ch = FileChannel.open(LOG_FILE.toPath(),
+                StandardOpenOption.READ)) {
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _map = map;
+        return map;
+    }
+
+    /** @return TreeSet<String>
+     * @param m STRING
+     * Returns the distinct trigrams of the UTF-8 bytes of M, in hex. */
+    private static TreeSet<String> grams(String m) {
+        byte[] b = m.getBytes(StandardCharsets.UTF_8);
+        TreeSet<String> res = new TreeSet<>();
+        for (int i = 0; i + GRAM <= b.length; i += 1) {
+            res.add(String.format("%02x%02x%02x", b[i], b[i + 1], b[i + 2]));
+        }
+        return res;
+    }
+
+    /** @return File
+     * @param m STRING
+     * Returns the posting file for messages equal to M. */
+    private static File exactFile(String m) {
+        String h = Utils.sha1(m);
+        return Utils.join(EXACT_FOLDER, h.substring(0, 2), h.substring(2));
+    }
+
+    /** @return File
+     * @param g STRING
+     * Returns the posting file for messages containing trigram G. */
+    private static File gramFile(String g) {
+        return Utils.join(INDEX_FOLDER, g.substring(0, 2), g.substring(2));
+    }
+
+    /** @param f FILE
+     * @param off INT
+     * Appends OFF to the posting file F. */
+    private static void addPosting(File f, int off) {
+        f.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(f, true)))) {
+            out.writeInt(off);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @return int[]
+     * @param f FILE
+     * Returns the offsets in posting file F, in increasing order, or none
+     * if it does not exist. */
+    private static int[] postings(File f) {
+        if (!f.exists()) {
+            return new int[0];
+        }
+        ByteBuffer b = ByteBuffer.wrap(Utils.readContents(f));
+        int[] res = new int[b.remaining() / 4];
+        for (int i = 0; i < res.length; i += 1) {
+            res[i] = b.getInt();
+        }
+        return res;
+    }
+
+    /** @return int[]
+     * @param a INT[]
+     * @param b INT[]
+     * Returns the offsets in both A and B, which must be sorted. */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] res = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length;) {
+            if (a[i] < b[j]) {
+                i += 1;
+            } else if (a[i] > b[j]) {
+                j += 1;
+            } else {
+                res[n] = a[i];
+                n += 1;
+                i += 1;
+                j += 1;
+            }
+        }
+        return Arrays.copyOf(res, n);
+    }
+
+    /** @param f FILE
+     * Deletes F and everything below it, if it exists. */
+    private static void deleteAll(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                deleteAll(c);
+            }
+        }
+        f.delete();
+    }
+
+    /** @return String
+     * @param b BYTEBUFFER
+     * Reads a binary SHA1 from B, returning null if it is all zeros. */
+    private static String shaAt(ByteBuffer b) {
+        byte[] sha = new byte[Pack.SHA_BYTES];
+        b.get(sha);
+        for (byte x : sha) {
+            if (x != 0) {
+                return Pack.toHex(sha);
+            }
+        }
+        return null;
+    }
+
+    /** @return String
+     * @param b BYTEBUFFER
+     * Reads a length and that many bytes of UTF-8 from B. */
+    private static String stringAt(ByteBuffer b) {
+        byte[] s = new byte[b.getInt()];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+
+    /** @return byte[]
+     * @param sha STRING
+     * Converts SHA to binary, with null as all zeros. */
+    private static byte[] toBytes(String sha) {
+        return sha == null ? new byte[Pack.SHA_BYTES] : Pack.toBytes(sha);
+    }
+
+    /** The metadata of one commit, as kept in LOG_FILE. */
+    static class Entry {
+        /** Creates an Entry with these parameters.
+         * @param sha STRING
+         * @param parent1 STRING
+         * @param parent2 STRING
+         * @param timestamp LONG
+         * @param date STRING
+         * @param message STRING */
+        Entry(String sha, String parent1, String parent2, long timestamp,
+              String date, String message) {
+            _sha = sha;
+            _parent1 = parent1;
+            _parent2 = parent2;
+            _timestamp = timestamp;
+            _date = date;
+            _message = message;
+        }
+
+        /** @return String
+         * Getter method for _sha. */
+        String getSha() {
+            return _sha;
+        }
+
+        /** @return String
+         * Getter method for _parent1. */
+        String getParent1Sha() {
+            return _parent1;
+        }
+
+        /** @return String
+         * Getter method for _parent2. */
+        String getParent2Sha() {
+            return _parent2;
+        }
+
+        /** @return long
+         * Getter method for _timestamp. */
+        long getTimestamp() {
+            return _timestamp;
+        }
+
+        /** @return String
+         * Getter method for _date. */
+        String getDate() {
+            return _date;
+        }
+
+        /** @return String
+         * Getter method for _message. */
+        String getMessage() {
+            return _message;
+        }
+
+        /** SHA1 of the commit. */
+        private final String _sha;
+
+        /** SHA1 of its first parent, or null. */
+        private final String _parent1;
+
+        /** SHA1 of its second parent, or null. */
+        private final String _parent2;
+
+        /** Its date in milliseconds since the epoch. */
+        private final long _timestamp;
+
+        /** Its date as log prints it. */
+        private final String _date;
+
+        /** Its message. */
+        private final String _message;
+    }
+
+    /** The memory-mapped LOG_FILE, or null if it has not been mapped. */
+    private static MappedByteBuffer _map;
+}
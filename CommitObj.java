@@ -3,16 +3,24 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.Date;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 
 /** This class is the representation for a commit, which would be created by the
- * commit() function within Main.java.
+ * commit() function within Repository.java.
  * @author Parth Shisode */
 public class CommitObj implements Serializable {
     /** The folder holding commits in /.gitlet. */
-    static final File COMMIT_FOLDER = Utils.join(Main.DOT_GITLET, "commits");
+    static final File COMMIT_FOLDER = Utils.join(Repository.DOT_GITLET,
+            "commits");
+
+    /** The format of _date. */
+    static final String DATE_FORMAT = "E MMM dd HH:mm:ss y Z";
 
     /** Creates a new initial commit. */
     public CommitObj() {
@@ -20,10 +28,10 @@ public class CommitObj implements Serializable {
         _date = "Wed Dec 31 16:00:00 1969 -0800";
         _parent1Sha = null;
         _parent2Sha = null;
-        _blobMap = new TreeMap<>();
+        _treeSha = Tree.build(new TreeMap<>());
 
         String s;
-        s = Utils.sha1(_message, _date, _blobMap.toString());
+        s = Utils.sha1(_message, _date, _treeSha);
         _cSha = s;
 
         saveCommit();
@@ -42,58 +50,110 @@ public class CommitObj implements Serializable {
             _parent2Sha = null;
         }
         _date = date();
-        _blobMap = createMap();
+        _treeSha = createTree();
         String s;
-        s = Utils.sha1(_message, _date, _blobMap.toString(), _parent1Sha);
+        s = Utils.sha1(_message, _date, _treeSha, _parent1Sha);
         _cSha = s;
 
-        if (!Utils.plainFilenamesIn(COMMIT_FOLDER).contains(_cSha)) {
+        if (!Collector.freshen(Transaction.find(Utils.join(COMMIT_FOLDER,
+                _cSha)), _cSha)) {
             saveCommit();
         }
     }
 
-    /** @return TREEMAP<FILE, STRING>
-     * ASSUMES that Main.S_ADD_FOLDER and WORK_DIR
-     * and S_REM_FOLDER is NOT empty since a commit can
+    /** @return STRING
+     * ASSUMES that the Stage is NOT empty since a commit can
      * only occur if something is inside the staging area.
-     * Create the _blobMap object.*/
-    private TreeMap<File, String> createMap() {
-        File cF = Utils.join(COMMIT_FOLDER, _parent1Sha);
-        CommitObj par = Utils.readObject(cF, CommitObj.class);
-
-        TreeMap<File, String> map = par.getBlobMap();
-        File t; Blob b;
-
-        for (String fName : Utils.plainFilenamesIn(Main.S_ADD_FOLDER)) {
-            t = Utils.join(Main.S_ADD_FOLDER, fName);
-            b = Utils.readObject(t, Blob.class);
-            map.put(b.getBlobFile(), b.getSha());
+     * Create the Tree of this commit from its parent's, and return
+     * its SHA.*/
+    private String createTree() {
+        CommitObj par = read(_parent1Sha);
+
+        TreeMap<File, String> puts = new TreeMap<>();
+        for (Map.Entry<String, String> e : Stage.getAdded().entrySet()) {
+            puts.put(Repository.workFile(e.getKey()), e.getValue());
         }
 
-        for (String fName : Utils.plainFilenamesIn(Main.S_REM_FOLDER)) {
-            map.remove(Utils.join(Main.WORK_DIR, fName));
+        List<File> removes = new ArrayList<>();
+        for (String fName : Stage.getRemoved()) {
+            removes.add(Repository.workFile(fName));
         }
-        return map;
+        return Tree.update(par.getTreeSha(), puts, removes);
     }
 
     /** @return STRING
      * Function for generating a new date-time. */
     private String date() {
         Date d = new Date();
-        SimpleDateFormat f = new SimpleDateFormat("E MMM dd HH:mm:ss y Z");
+        SimpleDateFormat f = new SimpleDateFormat(DATE_FORMAT);
         return f.format(d);
     }
 
-    /** Function for saving a CommitObj to COMMIT_FOLDER. */
+    /** @return CommitObj
+     * @param sha STRING
+     * Reads the commit SHA, whether it is loose in COMMIT_FOLDER or
+     * in the Pack, through the ObjectCache. */
+    static CommitObj read(String sha) {
+        CommitObj c = ObjectCache.read(sha, COMMIT_FOLDER, CommitObj.class);
+        if (c == null) {
+            throw new IllegalArgumentException("No commit " + sha);
+        }
+        return c;
+    }
+
+    /** @return boolean
+     * @param sha STRING
+     * Returns whether the commit SHA exists, loose or packed. */
+    static boolean exists(String sha) {
+        return Transaction.find(Utils.join(COMMIT_FOLDER, sha)).isFile()
+                || Pack.contains(sha);
+    }
+
+    /** @return List<String>
+     * Returns the SHA of every commit, loose or packed. */
+    static List<String> allShas() {
+        List<String> res = new ArrayList<>(
+                Utils.plainFilenamesIn(COMMIT_FOLDER));
+        res.addAll(Pack.list(Pack.COMMIT));
+        return res;
+    }
+
+    /** Function for saving a CommitObj to COMMIT_FOLDER, and recording
+     * it in the CommitGraph and CommitLog once the Transaction saving it
+     * commits. */
     public void saveCommit() {
-        File commitFile = Utils.join(COMMIT_FOLDER, _cSha);
-        Utils.writeObject(commitFile, this);
+        long t = Trace.start();
+        byte[] b = Utils.serialize(this);
+        Transaction.write(Utils.join(COMMIT_FOLDER, _cSha), b);
+        Trace.end("write-object", t, b.length);
+        Transaction.afterCommit(() -> {
+            CommitGraph.add(this);
+            CommitLog.add(this);
+        });
     }
 
     /** @return TREEMAP<FILE, STRING>
-     * Getter method for _blobMap. */
+     * Returns every file this commit tracks, paired with the SHA of
+     * its Blob. This reads the whole Tree, so use getBlob for single
+     * files. */
     public TreeMap<File, String> getBlobMap() {
-        return _blobMap;
+        TreeMap<File, String> map = new TreeMap<>();
+        Tree.flatten(_treeSha, map);
+        return map;
+    }
+
+    /** @return String
+     * @param f FILE
+     * Returns the SHA of the Blob this commit tracks for F, or null. */
+    public String getBlob(File f) {
+        return Tree.get(_treeSha, f);
+    }
+
+    /** @return String
+     * Getter method for _treeSha. Two commits with the same _treeSha
+     * track exactly the same files. */
+    public String getTreeSha() {
+        return _treeSha;
     }
 
     /** @return String
@@ -120,14 +180,24 @@ public class CommitObj implements Serializable {
         return _date;
     }
 
+    /** @return long
+     * Returns _date in milliseconds since the epoch. */
+    public long getTimestamp() {
+        try {
+            return new SimpleDateFormat(DATE_FORMAT).parse(_date).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
     /** @return String
      * Getter method for _parent2Sha. */
     public String getParent2Sha() {
         return _parent2Sha;
     }
 
-    /** Represents the pairing between each file and content via _blobMap. */
-    private final TreeMap<File, String> _blobMap;
+    /** The SHA of the root Tree of the files this commit tracks. */
+    private final String _treeSha;
 
     /** Is the commit message. */
     private final String _message;
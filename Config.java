@@ -0,0 +1,171 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/** This class holds the settings of a repository, kept in CONFIG_FILE as
+ * Java properties and changed with the config command. Only the keys in
+ * KEYS may be set, each to a value matching its pattern there.
+ * @author Parth Shisode */
+public class Config {
+    /** The file holding the settings in /.gitlet. */
+    static final File CONFIG_FILE = Utils.join(Repository.DOT_GITLET, "config");
+
+    /** How new Blobs are stored: "deflate" compresses them, "raw" keeps
+     * their contents as they are so checkout can copy them directly. */
+    static final String BLOB_FORMAT = "blob.format";
+
+    /** Files larger than this many bytes are stored as chunks shared
+     * between versions, or 0 to never chunk files. */
+    static final String CHUNK_THRESHOLD = "chunk.threshold";
+
+    /** The most bytes of commits, Trees and Blobs kept in the
+     * ObjectCache. */
+    static final String CACHE_SIZE = "cache.size";
+
+    /** Unreachable objects younger than this many seconds are kept by
+     * gc, in case a command still running is about to use them. */
+    static final String GC_GRACE = "gc.grace";
+
+    /** Each key which may be set, its default value and a pattern for the
+     * values it accepts. */
+    private static final String[][] KEYS = {
+        {BLOB_FORMAT, "deflate", "deflate|raw"},
+        {CHUNK_THRESHOLD, "0", "\\d{1,18}"},
+        {CACHE_SIZE, "33554432", "\\d{1,18}"},
+        {GC_GRACE, "1209600", "\\d{1,12}"},
+    };
+
+    /** @return String
+     * @param key STRING
+     * Returns the value of KEY, or its default if it has not been set. */
+    static String get(String key) {
+        load();
+        return _props.getProperty(key, spec(key)[1]);
+    }
+
+    /** @param key STRING
+     * @param value STRING
+     * Sets KEY to VALUE and writes CONFIG_FILE. */
+    static void set(String key, String value) {
+        if (!value.matches(spec(key)[2])) {
+            throw new GitletException("Invalid value for " + key + ".");
+        }
+        load();
+        _props.setProperty(key, value);
+        File tmp = Utils.join(Repository.DOT_GITLET, "config.tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                _props.store(out, null);
+            }
+            Files.move(tmp.toPath(), CONFIG_FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @return Map<String, String>
+     * Returns every key and its value, sorted by key. */
+    static Map<String, String> all() {
+        TreeMap<String, String> res = new TreeMap<>();
+        for (String[] k : KEYS) {
+            res.put(k[0], get(k[0]));
+        }
+        return res;
+    }
+
+    /** @return boolean
+     * Returns whether new Blobs are stored uncompressed. */
+    static boolean rawBlobs() {
+        return get(BLOB_FORMAT).equals("raw");
+    }
+
+    /** @return long
+     * Returns the size above which files are chunked, or 0. */
+    static long chunkThreshold() {
+        return Long.parseLong(get(CHUNK_THRESHOLD));
+    }
+
+    /** @return long
+     * Returns the most bytes the ObjectCache may hold. */
+    static long cacheSize() {
+        return Long.parseLong(get(CACHE_SIZE));
+    }
+
+    /** @return long
+     * Returns how many seconds old an unreachable object must be before
+     * gc removes it. */
+    static long gcGrace() {
+        return Long.parseLong(get(GC_GRACE));
+    }
+
+    /** @return String[]
+     * @param key STRING
+     * Returns the entry of KEYS for KEY, failing if there is none. */
+    private static String[] spec(String key) {
+        for (String[] k : KEYS) {
+            if (k[0].equals(key)) {
+                return k;
+            }
+        }
+        throw new GitletException("No config key " + key + " exists.");
+    }
+
+    /** Reads CONFIG_FILE, unless it has been read already and not been
+     * replaced since, by this process or another. */
+    private static synchronized void load() {
+        List<Object> stamp = stamp();
+        if (_props != null && stamp.equals(_stamp)) {
+            return;
+        }
+        Properties props = new Properties();
+        if (CONFIG_FILE.exists()) {
+            try (InputStream in = new FileInputStream(CONFIG_FILE)) {
+                props.load(in);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+        _props = props;
+        _stamp = stamp;
+    }
+
+    /** @return List<Object>
+     * Returns the file key, modification time and size of CONFIG_FILE,
+     * which change whenever it is replaced, or an empty list if there is
+     * no CONFIG_FILE. */
+    private static List<Object> stamp() {
+        try {
+            BasicFileAttributes a = Files.readAttributes(CONFIG_FILE.toPath(),
+                    BasicFileAttributes.class);
+            return Arrays.asList(a.fileKey(), a.lastModifiedTime(),
+                    a.size());
+        } catch (NoSuchFileException e) {
+            return Collections.emptyList();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** The settings, or null if CONFIG_FILE has not been read. */
+    private static Properties _props;
+
+    /** What stamp() returned when _props was read. */
+    private static List<Object> _stamp;
+}
@@ -0,0 +1,191 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** This class runs gitlet commands for other processes, so that a
+ * command does not pay for starting a JVM, loading classes and mapping
+ * the pack, commit graph and commit log all over again.
+ *
+ * The daemon listens on the Unix domain socket SOCKET_FILE. A client sends
+ * the arguments of one command, each followed by a zero byte, and shuts
+ * down its side of the connection; the daemon runs the command with
+ * System.out sent down the socket, and closes it when the command is done.
+ * A request that is malformed, or not sent within READ_TIMEOUT, is dropped.
+ * Commands are run one at a time, in the order they arrive. Any process
+ * can be a client, e.g.
+ *     printf '%s\0' log -n 5 | nc -NU .gitlet/daemon.sock
+ * @author Parth Shisode */
+public class Daemon {
+    /** The socket the daemon listens on in /.gitlet. */
+    static final File SOCKET_FILE = Utils.join(Repository.DOT_GITLET,
+            "daemon.sock");
+
+    /** How long, in milliseconds, a client may take to send a request. */
+    static final long READ_TIMEOUT = 5000;
+
+    /** The most bytes a request may have. */
+    static final int ARGS_MAX = 1 << 20;
+
+    /** @return boolean
+     * @param args STRING[]
+     * Sends the command ARGS to the daemon of this repository, copying
+     * what it prints to System.out, and returns true, or returns false if
+     * no daemon is running. */
+    static boolean forward(String... args) {
+        if (args.length == 0 || !SOCKET_FILE.exists()) {
+            return false;
+        }
+        SocketChannel ch;
+        try {
+            ch = SocketChannel.open(StandardProtocolFamily.UNIX);
+            ch.connect(UnixDomainSocketAddress.of(SOCKET_FILE.toPath()));
+        } catch (IOException e) {
+            return false;
+        }
+        try (ch) {
+            OutputStream out = Channels.newOutputStream(ch);
+            ByteArrayOutputStream req = new ByteArrayOutputStream();
+            for (String arg : args) {
+                req.write(arg.getBytes(StandardCharsets.UTF_8));
+                req.write(0);
+            }
+            out.write(req.toByteArray());
+            ch.shutdownOutput();
+
+            InputStream in = Channels.newInputStream(ch);
+            byte[] buf = new byte[Blob.BUF_SIZE];
+            for (int n = in.read(buf); n != -1; n = in.read(buf)) {
+                System.out.write(buf, 0, n);
+                if (System.out.checkError()) {
+                    break;
+                }
+            }
+            System.out.flush();
+            return true;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Listens on SOCKET_FILE and runs commands until told to stop. */
+    static void serve() throws IOException {
+        if (SOCKET_FILE.exists()) {
+            if (forward("daemon")) {
+                return;
+            }
+            SOCKET_FILE.delete();
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open(
+                StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(SOCKET_FILE.toPath()));
+            PrintStream console = System.out;
+            boolean running = true;
+            while (running) {
+                try (SocketChannel ch = server.accept()) {
+                    running = handle(ch, console);
+                } catch (IOException e) {
+                    console.println(e.getMessage());
+                }
+            }
+        } finally {
+            SOCKET_FILE.delete();
+        }
+    }
+
+    /** @return boolean
+     * @param ch SOCKETCHANNEL
+     * @param console PRINTSTREAM, where System.out goes between commands.
+     * Runs the command sent down CH and returns whether to keep serving.
+     * Anything but a GitletException thrown by the command is reported to
+     * the client without stopping the daemon. */
+    private static boolean handle(SocketChannel ch, PrintStream console)
+            throws IOException {
+        String[] args = readArgs(ch);
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                Channels.newOutputStream(ch), Blob.BUF_SIZE), false,
+                StandardCharsets.UTF_8);
+        if (args.length > 0 && args[0].equals("daemon")) {
+            boolean stop = args.length == 2 && args[1].equals("stop");
+            out.println(stop ? "Daemon stopped."
+                    : "A daemon is already running.");
+            out.flush();
+            return !stop;
+        }
+        System.setOut(out);
+        try {
+            Main.run(args);
+        } catch (RuntimeException e) {
+            out.println(e);
+        } finally {
+            out.flush();
+            System.setOut(console);
+        }
+        return true;
+    }
+
+    /** @return String[]
+     * @param ch SOCKETCHANNEL
+     * Reads zero-terminated arguments from CH up to the end of the
+     * stream. A request that is empty, does not end in a zero byte, is
+     * longer than ARGS_MAX or is not finished within READ_TIMEOUT is
+     * refused with an IOException, so that a stalled or broken client
+     * cannot hold up the commands queued behind it. */
+    private static String[] readArgs(SocketChannel ch) throws IOException {
+        ByteArrayOutputStream req = new ByteArrayOutputStream();
+        ByteBuffer buf = ByteBuffer.allocate(Blob.BUF_SIZE);
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+        ch.configureBlocking(false);
+        try (Selector sel = Selector.open()) {
+            ch.register(sel, SelectionKey.OP_READ);
+            while (true) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    throw new IOException("request timed out");
+                }
+                sel.select(left);
+                sel.selectedKeys().clear();
+                int n = ch.read(buf);
+                if (n == -1) {
+                    break;
+                }
+                req.write(buf.array(), 0, buf.position());
+                buf.clear();
+                if (req.size() > ARGS_MAX) {
+                    throw new IOException("request too long");
+                }
+            }
+        } finally {
+            ch.configureBlocking(true);
+        }
+        byte[] bytes = req.toByteArray();
+        if (bytes.length == 0 || bytes[bytes.length - 1] != 0) {
+            throw new IOException("malformed request");
+        }
+        List<String> args = new ArrayList<>();
+        for (int start = 0, i = 0; i < bytes.length; i += 1) {
+            if (bytes[i] == 0) {
+                args.add(new String(bytes, start, i - start,
+                        StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+}
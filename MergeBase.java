@@ -0,0 +1,168 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** This class finds the best common ancestors of two commits using the
+ * CommitGraph. A common ancestor is best when it is not an ancestor of
+ * another common ancestor; criss-cross histories can have several.
+ *
+ * Both commits are walked at once, newest generation first, painting
+ * each commit with the side(s) it is reachable from. A commit painted by
+ * both sides is a candidate, and everything below it is marked STALE.
+ * The walk stops once only stale commits are left to visit, so it costs
+ * time proportional to the distance to the merge base rather than to the
+ * length of the whole history.
+ * @author Parth Shisode */
+public class MergeBase {
+
+    /** Paint for commits reachable from the first commit. */
+    private static final int SIDE1 = 1;
+
+    /** Paint for commits reachable from the second commit. */
+    private static final int SIDE2 = 2;
+
+    /** Paint for commits below a common ancestor. */
+    private static final int STALE = 4;
+
+    /** @return List<String>
+     * @param a STRING
+     * @param b STRING
+     * Returns every best common ancestor of commits A and B, newest
+     * first. */
+    static List<String> bases(String a, String b) {
+        List<String> res = new ArrayList<>();
+        if (a.equals(b)) {
+            res.add(a);
+            return res;
+        }
+        MergeBase walk = new MergeBase();
+        res = walk.paint(a, b);
+        walk.removeRedundant(res);
+        res.sort(walk.newestFirst());
+        return res;
+    }
+
+    /** @return List<String>
+     * @param a STRING
+     * @param b STRING
+     * Paints down from A and B and returns the candidate common
+     * ancestors, which may include some that are not best. */
+    private List<String> paint(String a, String b) {
+        List<String> res = new ArrayList<>();
+        PriorityQueue<String> queue = new PriorityQueue<>(newestFirst());
+        _paint.put(a, SIDE1);
+        _paint.put(b, SIDE2);
+        queue.add(a);
+        queue.add(b);
+        while (hasActive(queue)) {
+            String c = queue.poll();
+            int flags = _paint.get(c);
+            if ((flags & (SIDE1 | SIDE2)) == (SIDE1 | SIDE2)
+                    && (flags & STALE) == 0) {
+                res.add(c);
+                flags |= STALE;
+                _paint.put(c, flags);
+            }
+            for (String p : parents(c)) {
+                int old = _paint.getOrDefault(p, 0);
+                if ((old & flags) != flags) {
+                    _paint.put(p, old | flags);
+                    queue.add(p);
+                }
+            }
+        }
+        return res;
+    }
+
+    /** @param candidates LIST<STRING>
+     * Removes from CANDIDATES every commit which is an ancestor of
+     * another of them. Walks stop below the oldest generation among
+     * CANDIDATES, since no candidate can be found past it. */
+    private void removeRedundant(List<String> candidates) {
+        if (candidates.size() < 2) {
+            return;
+        }
+        int minGen = Integer.MAX_VALUE;
+        for (String c : candidates) {
+            minGen = Math.min(minGen, generation(c));
+        }
+        HashSet<String> redundant = new HashSet<>();
+        for (String c : candidates) {
+            if (redundant.contains(c)) {
+                continue;
+            }
+            HashSet<String> seen = new HashSet<>();
+            ArrayDeque<String> todo = new ArrayDeque<>(parents(c));
+            while (!todo.isEmpty()) {
+                String p = todo.pop();
+                if (generation(p) < minGen || !seen.add(p)) {
+                    continue;
+                }
+                if (candidates.contains(p)) {
+                    redundant.add(p);
+                }
+                todo.addAll(parents(p));
+            }
+        }
+        candidates.removeAll(redundant);
+    }
+
+    /** @return boolean
+     * @param queue PRIORITYQUEUE<STRING>
+     * Returns whether QUEUE holds any commit which is not STALE. */
+    private boolean hasActive(PriorityQueue<String> queue) {
+        for (String c : queue) {
+            if ((_paint.get(c) & STALE) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return List<String>
+     * @param c STRING
+     * Returns the parents of commit C. */
+    private List<String> parents(String c) {
+        List<String> res = new ArrayList<>(2);
+        String p1 = CommitGraph.parent1(c);
+        String p2 = CommitGraph.parent2(c);
+        if (p1 != null) {
+            res.add(p1);
+        }
+        if (p2 != null) {
+            res.add(p2);
+        }
+        return res;
+    }
+
+    /** @return int
+     * @param c STRING
+     * Returns the generation number of commit C. */
+    private int generation(String c) {
+        return _gens.computeIfAbsent(c, CommitGraph::generation);
+    }
+
+    /** @return Comparator<String>
+     * Orders commits by generation and then timestamp, newest first. */
+    private Comparator<String> newestFirst() {
+        Comparator<String> byGen = Comparator.comparingInt(this::generation);
+        return byGen.thenComparingLong(
+                c -> _times.computeIfAbsent(c, CommitGraph::timestamp))
+                .reversed();
+    }
+
+    /** The paint of each commit visited. */
+    private final HashMap<String, Integer> _paint = new HashMap<>();
+
+    /** Generation numbers already read from the CommitGraph. */
+    private final HashMap<String, Integer> _gens = new HashMap<>();
+
+    /** Timestamps already read from the CommitGraph. */
+    private final HashMap<String, Long> _times = new HashMap<>();
+}
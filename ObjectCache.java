@@ -0,0 +1,155 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** This class keeps the commits, Trees and small Blobs read most recently,
+ * so that reading one again is a lookup rather than a file read and
+ * deserialization. Every object is named by the SHA1 of its contents and
+ * never changes, so nothing cached can go stale.
+ *
+ * The cache is bounded by the stored size of what it holds, cache.size
+ * bytes in the Config, and drops the least recently used objects to stay
+ * within it. It lives as long as the JVM, so a Daemon, or a program using
+ * Repository, keeps it across commands.
+ * @author Parth Shisode */
+public class ObjectCache {
+
+    /** Blobs larger than this many bytes are never cached. */
+    static final int BLOB_MAX = 1 << 16;
+
+    /** @return T
+     * @param sha STRING
+     * @param folder FILE, where the object is kept when loose.
+     * @param type CLASS<T>
+     * Returns the serialized object SHA of TYPE, loose in FOLDER or
+     * packed, or null if it is in neither. */
+    static <T extends Serializable> T read(String sha, File folder,
+                                           Class<T> type) {
+        T res = lookup(sha, type);
+        if (res != null) {
+            return res;
+        }
+        long t = Trace.start();
+        File f = Transaction.find(Utils.join(folder, sha));
+        byte[] b = f.exists() ? Utils.readContents(f) : Pack.read(sha);
+        if (b == null) {
+            return null;
+        }
+        res = Pack.deserialize(b, type);
+        Trace.end("read-object", t, b.length);
+        put(sha, res, b.length);
+        return res;
+    }
+
+    /** @return byte[]
+     * @param sha STRING
+     * Returns the contents of the Blob SHA, which callers must not
+     * change, reading them with Blob.open on a miss. */
+    static byte[] blob(String sha) {
+        byte[] res = lookup(sha, byte[].class);
+        if (res != null) {
+            return res;
+        }
+        res = Blob.readAll(sha);
+        if (res.length <= BLOB_MAX) {
+            put(sha, res, res.length);
+        }
+        return res;
+    }
+
+    /** @return long
+     * Returns the number of reads answered from the cache. */
+    static synchronized long hits() {
+        return _hits;
+    }
+
+    /** @return long
+     * Returns the number of reads which went to /.gitlet. */
+    static synchronized long misses() {
+        return _misses;
+    }
+
+    /** @return long
+     * Returns the stored size of everything cached. */
+    static synchronized long bytes() {
+        return _bytes;
+    }
+
+    /** Drops everything cached. */
+    static synchronized void clear() {
+        _entries.clear();
+        _bytes = 0;
+    }
+
+    /** @return T
+     * @param sha STRING
+     * @param type CLASS<T>
+     * Returns the cached object SHA if it is a TYPE, marking it most
+     * recently used, or null. */
+    private static synchronized <T> T lookup(String sha, Class<T> type) {
+        Entry e = _entries.get(sha);
+        if (e != null && type.isInstance(e._value)) {
+            _hits += 1;
+            return type.cast(e._value);
+        }
+        _misses += 1;
+        return null;
+    }
+
+    /** @param sha STRING
+     * @param value OBJECT
+     * @param weight INT
+     * Caches VALUE as SHA, stored in WEIGHT bytes, dropping the least
+     * recently used objects until the cache fits in cache.size. */
+    private static synchronized void put(String sha, Object value,
+                                         int weight) {
+        long capacity = Config.cacheSize();
+        if (weight > capacity) {
+            return;
+        }
+        Entry old = _entries.put(sha, new Entry(value, weight));
+        if (old != null) {
+            _bytes -= old._weight;
+        }
+        _bytes += weight;
+        Iterator<Entry> it = _entries.values().iterator();
+        while (_bytes > capacity) {
+            _bytes -= it.next()._weight;
+            it.remove();
+        }
+    }
+
+    /** A cached object and its stored size. */
+    private static class Entry {
+        /** An Entry of these parameters.
+         * @param value OBJECT
+         * @param weight INT */
+        Entry(Object value, int weight) {
+            _value = value;
+            _weight = weight;
+        }
+
+        /** The object. */
+        private final Object _value;
+
+        /** Its stored size in bytes. */
+        private final int _weight;
+    }
+
+    /** The cached objects by SHA1, least recently used first. */
+    private static final Map<String, Entry> _entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /** The sum of the weights of _entries. */
+    private static long _bytes;
+
+    /** Number of reads answered from _entries. */
+    private static long _hits;
+
+    /** Number of reads not answered from _entries. */
+    private static long _misses;
+}
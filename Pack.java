@@ -0,0 +1,775 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** A Pack holds blobs, trees and commits in a single file in PACK_FOLDER,
+ * instead of one loose file per object. An object may be stored as a delta
+ * against another one in the pack: older versions of a file against the
+ * version that replaced them, and commits against their first parent.
+ *
+ * The file is a PACK_MAGIC header, the entries, and then an index: a
+ * 256-way fan-out table followed by (SHA1, offset) pairs sorted by SHA1.
+ * Its last eight bytes hold the offset of that index. The whole file is
+ * memory-mapped, so finding an object is a binary search over the map,
+ * and repack refuses to write a pack longer than MAX_SIZE, the most one
+ * mapping can address.
+ * @author Parth Shisode */
+public class Pack {
+    /** The folder holding the pack in /.gitlet. */
+    static final File PACK_FOLDER = Utils.join(Repository.DOT_GITLET, "pack");
+
+    /** The pack itself. */
+    static final File PACK_FILE = Utils.join(PACK_FOLDER, "objects.pack");
+
+    /** The first four bytes of a pack, "GPK1". */
+    static final int PACK_MAGIC = 0x47504b31;
+
+    /** Object type of a blob. */
+    static final byte BLOB = 1;
+
+    /** Object type of a commit. */
+    static final byte COMMIT = 2;
+
+    /** Object type of a tree. */
+    static final byte TREE = 3;
+
+    /** Entry stored as deflated object contents. */
+    static final byte FULL = 0;
+
+    /** Entry stored as a deflated delta against another entry. */
+    static final byte DELTA = 1;
+
+    /** The longest chain of deltas repack will create. */
+    static final int MAX_DEPTH = 10;
+
+    /** Number of bytes in a binary SHA1. */
+    static final int SHA_BYTES = 20;
+
+    /** The longest pack, in bytes, that repack will write. */
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    /** Size of one index entry: a binary SHA1 and a long offset. */
+    static final int ENTRY_SIZE = SHA_BYTES + 8;
+
+    /** Size of the fan-out table at the start of the index. */
+    static final int FANOUT_SIZE = 256 * 4;
+
+    /** Delta opcode copying a range of the base. */
+    private static final byte COPY = 0;
+
+    /** Delta opcode inserting literal bytes. */
+    private static final byte INSERT = 1;
+
+    /** Length of the blocks matched between a delta base and target. */
+    private static final int BLOCK = 16;
+
+    /** @return boolean
+     * @param sha STRING
+     * Returns whether the object SHA is in the pack. */
+    static boolean contains(String sha) {
+        return find(load(), sha) >= 0;
+    }
+
+    /** @return byte[]
+     * @param sha STRING
+     * Returns the contents of the object SHA, or null if it is not in
+     * the pack. */
+    static byte[] read(String sha) {
+        Mapping m = load();
+        long off = find(m, sha);
+        if (off < 0) {
+            return null;
+        }
+        return readAt(m, off);
+    }
+
+    /** @return T
+     * @param b BYTE[]
+     * @param expectedClass CLASS<T>
+     * Returns the object serialized in B. */
+    static <T extends Serializable> T deserialize(byte[] b,
+                                                  Class<T> expectedClass) {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(b))) {
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @return List<String>
+     * @param type BYTE
+     * Returns the SHA1 of every packed object of the given TYPE. */
+    static List<String> list(byte type) {
+        ArrayList<String> res = new ArrayList<>();
+        Mapping m = load();
+        if (m == null) {
+            return res;
+        }
+        for (int i = 0; i < m._count; i += 1) {
+            int pos = m._indexStart + FANOUT_SIZE + i * ENTRY_SIZE;
+            if (m._map.get((int) m._map.getLong(pos + SHA_BYTES)) == type) {
+                res.add(shaAt(m, pos));
+            }
+        }
+        return res;
+    }
+
+    /** @return long
+     * @param sha STRING
+     * Returns the number of bytes the entry for object SHA takes up in
+     * the pack, or -1 if it is not packed. */
+    static long size(String sha) {
+        Mapping m = load();
+        long off = find(m, sha);
+        if (off < 0) {
+            return -1;
+        }
+        int pos = (int) off + 2;
+        if (m._map.get((int) off + 1) == DELTA) {
+            pos += 8;
+        }
+        return pos + 8 + m._map.getInt(pos + 4) - off;
+    }
+
+    /** Combines every loose object, along with everything already packed,
+     * into a new pack and deletes the loose copies. Loose Blobs are left
+     * alone when Config.BLOB_FORMAT is "raw", so checkout can still copy
+     * them directly, and so are chunk manifests, whose chunks are packed
+     * like any other Blob. */
+    static void repack() {
+        repack(Collections.emptySet());
+    }
+
+    /** @param drop SET<STRING>
+     * Repacks like repack(), but leaves out the objects DROP, which are
+     * neither packed nor have their loose copies deleted. */
+    static void repack(Set<String> drop) {
+        TreeMap<String, Byte> types = new TreeMap<>();
+        for (byte type : new byte[] {BLOB, COMMIT, TREE}) {
+            for (String sha : list(type)) {
+                types.put(sha, type);
+            }
+        }
+        TreeMap<String, Byte> loose = new TreeMap<>();
+        for (byte type : new byte[] {BLOB, COMMIT, TREE}) {
+            if (type == BLOB && Config.rawBlobs()) {
+                continue;
+            }
+            for (String sha : Utils.plainFilenamesIn(folder(type))) {
+                if (sha.length() == 2 * SHA_BYTES && (type != BLOB
+                        || Blob.format(sha) != Blob.CHUNKED)) {
+                    loose.put(sha, type);
+                }
+            }
+        }
+        loose.keySet().removeAll(drop);
+        types.keySet().removeAll(drop);
+        types.putAll(loose);
+
+        Map<String, String> bases = planDeltas(types);
+        File tmp = Utils.join(PACK_FOLDER, "objects.pack.tmp");
+        HashMap<String, Long> offsets = new HashMap<>();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(PACK_MAGIC);
+            for (String sha : types.keySet()) {
+                writeEntry(out, sha, types, bases, offsets);
+            }
+            long indexStart = out.size();
+            checkSize(indexStart + FANOUT_SIZE
+                    + (long) types.size() * ENTRY_SIZE + 8);
+            int[] fanout = new int[256];
+            for (String sha : types.keySet()) {
+                fanout[Integer.parseInt(sha.substring(0, 2), 16)] += 1;
+            }
+            int total = 0;
+            for (int b = 0; b < fanout.length; b += 1) {
+                total += fanout[b];
+                out.writeInt(total);
+            }
+            for (String sha : types.keySet()) {
+                out.write(toBytes(sha));
+                out.writeLong(offsets.get(sha));
+            }
+            out.writeLong(indexStart);
+        } catch (IOException | IllegalArgumentException e) {
+            tmp.delete();
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        replace(tmp);
+        for (Map.Entry<String, Byte> e : loose.entrySet()) {
+            Utils.join(folder(e.getValue()), e.getKey()).delete();
+        }
+    }
+
+    /** @param tmp FILE
+     * Moves the pack TMP over PACK_FILE and maps it, under the same lock
+     * as load(), so that load() never hands out the old mapping once the
+     * old pack is gone. A caller still holding the old Mapping can go on
+     * reading it, as a mapping outlives the file it maps. */
+    private static synchronized void replace(File tmp) {
+        try {
+            Files.move(tmp.toPath(), PACK_FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        map();
+    }
+
+    /** @param end LONG
+     * Refuses to write a pack that would be END bytes long, if that is
+     * more than MAX_SIZE. */
+    private static void checkSize(long end) {
+        if (end > MAX_SIZE) {
+            throw new IllegalArgumentException("pack would exceed "
+                    + MAX_SIZE + " bytes; cannot repack");
+        }
+    }
+
+    /** @return File
+     * @param type BYTE
+     * Returns the folder holding loose objects of TYPE. */
+    private static File folder(byte type) {
+        switch (type) {
+        case BLOB:
+            return Blob.BLOB_FOLDER;
+        case COMMIT:
+            return CommitObj.COMMIT_FOLDER;
+        default:
+            return Tree.TREE_FOLDER;
+        }
+    }
+
+    /** @return Map<String, String>
+     * @param types TREEMAP<STRING, BYTE>
+     * Chooses a delta base for the objects in TYPES. Each commit's first
+     * parent is based on that commit, and each version of a file on the
+     * next newer version of the same path, so that the newest objects,
+     * which are read most, are stored whole. Commits are planned newest
+     * first by generation number, so that a linear history is cut into
+     * chains of MAX_DEPTH deltas below a whole commit. */
+    private static Map<String, String> planDeltas(
+            TreeMap<String, Byte> types) {
+        HashMap<String, String> bases = new HashMap<>();
+        HashMap<String, Integer> below = new HashMap<>();
+        List<String> commits = new ArrayList<>();
+        for (Map.Entry<String, Byte> e : types.entrySet()) {
+            if (e.getValue() == COMMIT) {
+                commits.add(e.getKey());
+            }
+        }
+        commits.sort(Comparator.comparingInt(
+                (String sha) -> -CommitGraph.generation(sha)));
+        HashMap<String, List<Map.Entry<Long, String>>> histories =
+                new HashMap<>();
+        for (String sha : commits) {
+            CommitObj c = CommitObj.read(sha);
+            String par = c.getParent1Sha();
+            if (par != null && types.containsKey(par)
+                    && !bases.containsKey(par)) {
+                addBase(bases, below, par, sha);
+            }
+            for (Map.Entry<File, String> b : c.getBlobMap().entrySet()) {
+                histories.computeIfAbsent(b.getKey().getPath(),
+                    k -> new ArrayList<>()).add(new AbstractMap.SimpleEntry<>(
+                        c.getTimestamp(), b.getValue()));
+            }
+        }
+        for (List<Map.Entry<Long, String>> versions : histories.values()) {
+            versions.sort(Collections.reverseOrder(
+                    Map.Entry.comparingByKey()));
+            String newer = null;
+            for (Map.Entry<Long, String> v : versions) {
+                String blob = v.getValue();
+                if (newer != null && !newer.equals(blob)
+                        && types.get(blob) != null
+                        && types.get(newer) != null
+                        && !bases.containsKey(blob)) {
+                    addBase(bases, below, blob, newer);
+                }
+                newer = blob;
+            }
+        }
+        return bases;
+    }
+
+    /** @param bases MAP<STRING, STRING>
+     * @param below MAP<STRING, INTEGER>
+     * @param sha STRING
+     * @param base STRING
+     * Records BASE as the delta base of SHA in BASES, unless that would
+     * create a cycle or a chain of more than MAX_DEPTH deltas. BELOW holds,
+     * for each object, the longest chain of deltas already based on it,
+     * and is kept up to date. */
+    private static void addBase(Map<String, String> bases,
+                                Map<String, Integer> below,
+                                String sha, String base) {
+        int depth = below.getOrDefault(sha, 0) + 1;
+        for (String b = base; b != null; b = bases.get(b)) {
+            if (b.equals(sha)) {
+                return;
+            }
+            if (bases.containsKey(b)) {
+                depth += 1;
+            }
+        }
+        if (depth > MAX_DEPTH) {
+            return;
+        }
+        bases.put(sha, base);
+        int d = below.getOrDefault(sha, 0) + 1;
+        for (String b = base; b != null; b = bases.get(b), d += 1) {
+            below.merge(b, d, Math::max);
+        }
+    }
+
+    /** @return long
+     * @param out DATAOUTPUTSTREAM
+     * @param sha STRING
+     * @param types MAP<STRING, BYTE>
+     * @param bases MAP<STRING, STRING>
+     * @param offsets MAP<STRING, LONG>
+     * Writes the object SHA to OUT, after its delta base if it has one,
+     * and returns the offset it was written at. */
+    private static long writeEntry(DataOutputStream out, String sha,
+                                   Map<String, Byte> types,
+                                   Map<String, String> bases,
+                                   Map<String, Long> offsets)
+            throws IOException {
+        if (offsets.containsKey(sha)) {
+            return offsets.get(sha);
+        }
+        String base = bases.get(sha);
+        long baseOff = -1;
+        if (base != null) {
+            baseOff = writeEntry(out, base, types, bases, offsets);
+        }
+        byte type = types.get(sha);
+        byte[] data = rawContents(sha, type);
+        byte encoding = FULL;
+        if (base != null) {
+            byte[] delta = delta(rawContents(base, type), data);
+            if (delta.length < data.length / 2) {
+                data = delta;
+                encoding = DELTA;
+            }
+        }
+        byte[] z = deflate(data);
+
+        long off = out.size();
+        checkSize(off + (encoding == DELTA ? 18 : 10) + z.length);
+        out.writeByte(type);
+        out.writeByte(encoding);
+        if (encoding == DELTA) {
+            out.writeLong(baseOff);
+        }
+        out.writeInt(data.length);
+        out.writeInt(z.length);
+        out.write(z);
+        offsets.put(sha, off);
+        return off;
+    }
+
+    /** @return byte[]
+     * @param sha STRING
+     * @param type BYTE
+     * Returns the contents of object SHA of TYPE, whether loose or packed.
+     * For a commit or tree these are the bytes of its serialized form. */
+    private static byte[] rawContents(String sha, byte type) {
+        if (type == BLOB) {
+            return Blob.readAll(sha);
+        }
+        File f = Utils.join(folder(type), sha);
+        if (f.exists()) {
+            return Utils.readContents(f);
+        }
+        return read(sha);
+    }
+
+    /** @return byte[]
+     * @param m MAPPING
+     * @param off LONG
+     * Returns the contents of the entry at OFF in M, resolving deltas. */
+    private static byte[] readAt(Mapping m, long off) {
+        int pos = (int) off;
+        byte encoding = m._map.get(pos + 1);
+        pos += 2;
+        long baseOff = -1;
+        if (encoding == DELTA) {
+            baseOff = m._map.getLong(pos);
+            pos += 8;
+        }
+        int rawLen = m._map.getInt(pos);
+        int zLen = m._map.getInt(pos + 4);
+        byte[] z = new byte[zLen];
+        m._map.get(pos + 8, z);
+        byte[] data = inflate(z, rawLen);
+        if (encoding == DELTA) {
+            return applyDelta(readAt(m, baseOff), data);
+        }
+        return data;
+    }
+
+    /** @return long
+     * @param m MAPPING, or null if there is no pack.
+     * @param sha STRING
+     * Returns the offset of object SHA in M, or -1. */
+    private static long find(Mapping m, String sha) {
+        if (m == null || sha == null || sha.length() != 2 * SHA_BYTES) {
+            return -1;
+        }
+        byte[] key;
+        try {
+            key = toBytes(sha);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        int first = key[0] & 0xff;
+        int fan = m._indexStart;
+        int lo = first == 0 ? 0 : m._map.getInt(fan + 4 * (first - 1));
+        int hi = m._map.getInt(fan + 4 * first) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int pos = fan + FANOUT_SIZE + mid * ENTRY_SIZE;
+            int cmp = compareSha(m, pos, key);
+            if (cmp == 0) {
+                return m._map.getLong(pos + SHA_BYTES);
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** @return Mapping
+     * Maps PACK_FILE into memory if it exists and has changed since it
+     * was last mapped, and returns the mapping, or null if there is no
+     * pack. Synchronized so that threads writing Blobs in parallel see a
+     * consistent mapping; each caller then reads only the Mapping it was
+     * given, which stays valid even after the pack is replaced. */
+    private static synchronized Mapping load() {
+        List<Object> stamp = stamp();
+        if (stamp == null) {
+            _pack = null;
+            return null;
+        }
+        if (_pack == null || !stamp.equals(_pack._stamp)) {
+            map();
+        }
+        return _pack;
+    }
+
+    /** @return List<Object>
+     * Returns the file key and length of PACK_FILE, which change whenever
+     * repack replaces it, or null if there is no pack. The modification
+     * time is left out, as nothing about the pack changes with it. */
+    private static List<Object> stamp() {
+        try {
+            BasicFileAttributes a = Files.readAttributes(PACK_FILE.toPath(),
+                    BasicFileAttributes.class);
+            return Arrays.asList(a.fileKey(), a.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Maps PACK_FILE into memory as _pack. */
+    private static synchronized void map() {
+        MappedByteBuffer map;
+        List<Object> stamp = stamp();
+        try (FileChannel ch = FileChannel.open(PACK_FILE.toPath(),
+                StandardOpenOption.READ)) {
+            if (ch.size() > MAX_SIZE) {
+                throw new IllegalArgumentException("pack is too large");
+            }
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        if (map.getInt(0) != PACK_MAGIC) {
+            throw new IllegalArgumentException("corrupt pack");
+        }
+        int indexStart = (int) map.getLong(map.capacity() - 8);
+        _pack = new Mapping(map, indexStart,
+                map.getInt(indexStart + FANOUT_SIZE - 4), stamp);
+    }
+
+    /** @return int
+     * @param m MAPPING
+     * @param pos INT
+     * @param key BYTE[]
+     * Compares the binary SHA1 at POS in M with KEY. */
+    private static int compareSha(Mapping m, int pos, byte[] key) {
+        for (int i = 0; i < SHA_BYTES; i += 1) {
+            int a = m._map.get(pos + i) & 0xff;
+            int b = key[i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    /** @return String
+     * @param m MAPPING
+     * @param pos INT
+     * Returns the binary SHA1 at POS in M as a hex string. */
+    private static String shaAt(Mapping m, int pos) {
+        byte[] sha = new byte[SHA_BYTES];
+        m._map.get(pos, sha);
+        return toHex(sha);
+    }
+
+    /** @return String
+     * @param sha BYTE[]
+     * Converts a binary SHA1 to its hex form. */
+    static String toHex(byte[] sha) {
+        StringBuilder s = new StringBuilder();
+        for (byte b : sha) {
+            s.append(String.format("%02x", b));
+        }
+        return s.toString();
+    }
+
+    /** @return byte[]
+     * @param sha STRING
+     * Converts a hex SHA1 to its binary form. */
+    static byte[] toBytes(String sha) {
+        byte[] res = new byte[SHA_BYTES];
+        for (int i = 0; i < SHA_BYTES; i += 1) {
+            res[i] = (byte) Integer.parseInt(
+                    sha.substring(2 * i, 2 * i + 2), 16);
+        }
+        return res;
+    }
+
+    /** @return byte[]
+     * @param data BYTE[]
+     * Returns DATA compressed with deflate. */
+    private static byte[] deflate(byte[] data) {
+        Deflater d = new Deflater();
+        d.setInput(data);
+        d.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[Blob.BUF_SIZE];
+        while (!d.finished()) {
+            out.write(buf, 0, d.deflate(buf));
+        }
+        d.end();
+        return out.toByteArray();
+    }
+
+    /** @return byte[]
+     * @param z BYTE[]
+     * @param len INT
+     * Returns the LEN bytes that Z decompresses to. */
+    private static byte[] inflate(byte[] z, int len) {
+        Inflater inf = new Inflater();
+        inf.setInput(z);
+        byte[] res = new byte[len];
+        try {
+            int n = 0;
+            while (n < len && !inf.finished()) {
+                if (inf.needsInput() || inf.needsDictionary()) {
+                    throw new IllegalArgumentException("corrupt pack entry");
+                }
+                n += inf.inflate(res, n, len - n);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("corrupt pack entry");
+        } finally {
+            inf.end();
+        }
+        return res;
+    }
+
+    /** @return byte[]
+     * @param base BYTE[]
+     * @param target BYTE[]
+     * Returns a delta which rebuilds TARGET out of BASE: the target length,
+     * then a series of COPY (offset, length) and INSERT (length, bytes)
+     * instructions. Matches are found through a table of the BLOCK-sized
+     * blocks of BASE. */
+    static byte[] delta(byte[] base, byte[] target) {
+        HashMap<Integer, Integer> blocks = new HashMap<>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(blockHash(base, i), i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(target.length);
+            int pending = 0;
+            int i = 0;
+            while (i + BLOCK <= target.length) {
+                Integer at = blocks.get(blockHash(target, i));
+                if (at == null || !matches(base, at, target, i, BLOCK)) {
+                    i += 1;
+                    continue;
+                }
+                int from = at;
+                while (from > 0 && i > pending
+                        && base[from - 1] == target[i - 1]) {
+                    from -= 1;
+                    i -= 1;
+                }
+                int len = 0;
+                while (from + len < base.length && i + len < target.length
+                        && base[from + len] == target[i + len]) {
+                    len += 1;
+                }
+                writeInsert(out, target, pending, i);
+                out.writeByte(COPY);
+                out.writeInt(from);
+                out.writeInt(len);
+                i += len;
+                pending = i;
+            }
+            writeInsert(out, target, pending, target.length);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** @return byte[]
+     * @param base BYTE[]
+     * @param delta BYTE[]
+     * Rebuilds the target of DELTA out of BASE. */
+    static byte[] applyDelta(byte[] base, byte[] delta) {
+        DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(delta));
+        try {
+            byte[] res = new byte[in.readInt()];
+            int pos = 0;
+            while (pos < res.length) {
+                byte op = in.readByte();
+                if (op == COPY) {
+                    int from = in.readInt();
+                    int len = in.readInt();
+                    System.arraycopy(base, from, res, pos, len);
+                    pos += len;
+                } else {
+                    int len = in.readInt();
+                    in.readFully(res, pos, len);
+                    pos += len;
+                }
+            }
+            return res;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+    }
+
+    /** @param out DATAOUTPUTSTREAM
+     * @param data BYTE[]
+     * @param start INT
+     * @param end INT
+     * Writes an INSERT of DATA[START..END) to OUT, if it is not empty. */
+    private static void writeInsert(DataOutputStream out, byte[] data,
+                                    int start, int end) throws IOException {
+        if (end > start) {
+            out.writeByte(INSERT);
+            out.writeInt(end - start);
+            out.write(data, start, end - start);
+        }
+    }
+
+    /** @return int
+     * @param data BYTE[]
+     * @param off INT
+     * Hashes the BLOCK bytes of DATA starting at OFF. */
+    private static int blockHash(byte[] data, int off) {
+        int h = 0;
+        for (int i = off; i < off + BLOCK; i += 1) {
+            h = 31 * h + data[i];
+        }
+        return h;
+    }
+
+    /** @return boolean
+     * @param a BYTE[]
+     * @param aOff INT
+     * @param b BYTE[]
+     * @param bOff INT
+     * @param len INT
+     * Returns whether the LEN bytes at AOFF in A and BOFF in B match. */
+    private static boolean matches(byte[] a, int aOff, byte[] b, int bOff,
+                                   int len) {
+        for (int i = 0; i < len; i += 1) {
+            if (a[aOff + i] != b[bOff + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** One mapping of the pack, along with where its index is. A new
+     * Mapping is made whenever the pack changes, never altered. */
+    private static class Mapping {
+        /** Creates a Mapping with these parameters.
+         * @param map MAPPEDBYTEBUFFER
+         * @param indexStart INT
+         * @param count INT
+         * @param stamp LIST<OBJECT> */
+        Mapping(MappedByteBuffer map, int indexStart, int count,
+                List<Object> stamp) {
+            _map = map;
+            _indexStart = indexStart;
+            _count = count;
+            _stamp = stamp;
+        }
+
+        /** The memory-mapped pack. */
+        private final MappedByteBuffer _map;
+
+        /** Offset of the index within the pack. */
+        private final int _indexStart;
+
+        /** Number of objects in the pack. */
+        private final int _count;
+
+        /** What stamp() returned when the pack was mapped. */
+        private final List<Object> _stamp;
+    }
+
+    /** The current mapping of the pack, or null if it has not been mapped.
+     * Only read and written while holding the lock on Pack. */
+    private static Mapping _pack;
+}
@@ -0,0 +1,904 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/** This class holds the logic of every command on the repository in the
+ * working directory, for Main and for any other Java program to call.
+ *
+ * Nothing here prints or exits: each method returns what its command
+ * found or made, and throws a GitletException, whose message is the one
+ * the command line prints, if the command cannot be carried out. Each
+ * call reads the state of /.gitlet afresh, and a call which changes it
+ * saves the staging area and current branch only if it succeeds, so a
+ * failed call leaves the repository as it was. Calls are serialized, so
+ * that the threads of one program may share a repository, and other
+ * processes may use it at the same time: a call which changes branches
+ * or the staging area that another process changed first is run again,
+ * while checkout, reset, merge, gc and repack lock the repository for
+ * their whole run, since they also change the working directory or
+ * delete objects. Calls which only read never wait.
+ * @author Parth Shisode */
+public class Repository {
+    /** The working directory. */
+    static final File WORK_DIR = new File(".");
+
+    /** Represents /.gitlet. */
+    static final File DOT_GITLET = Utils.join(WORK_DIR, ".gitlet");
+
+    /** Times a call is run again after another process changed what it
+     * read, before it gives up. */
+    static final int RETRIES = 100;
+
+    /** Creates a new Gitlet version-control system in the
+     * current directory. This system will automatically start with one
+     * commit: a commit that contains no files and has the commit
+     * message "initial commit". */
+    public static synchronized void init() {
+        retry(() -> {
+            load();
+            if (!CommitObj.allShas().isEmpty()) {
+                throw new GitletException("A Gitlet version-control system"
+                        + " already exists in the current directory.");
+            }
+
+            CommitObj initial = new CommitObj();
+            _currBranch = new Branch("master", initial.getSha());
+            save();
+        });
+    }
+
+    /** @param fileName STRING
+     * Adds a copy of the file, or of every file under the directory, as
+     * it currently exists to the staging area. */
+    public static synchronized void add(String fileName) {
+        retry(() -> {
+            open();
+            stageFile(fileName);
+            save();
+        });
+    }
+
+    /** @return CommitObj
+     * @param message STRING
+     * Saves a snapshot of tracked files in the current commit and staging
+     * area so they can be restored at a later time, and returns the new
+     * commit. */
+    public static synchronized CommitObj commit(String message) {
+        return retry(() -> {
+            open();
+            CommitObj res = newCommit(message);
+            save();
+            return res;
+        });
+    }
+
+    /** @param fileName String
+     * Unstage the file if it is currently staged for addition. If the
+     *  file is tracked in the current commit, stage it for removal and
+     *  remove the file from the working directory if the user has not
+     *  already done so. */
+    public static synchronized void rm(String fileName) {
+        retry(() -> {
+            open();
+            unstageFile(fileName);
+            save();
+        });
+    }
+
+    /** @return Iterable<CommitObj>
+     * Returns each commit from the current head back to the initial
+     * commit, following first parents only. Commits are read as they
+     * are iterated over, so the first few of a long history are cheap;
+     * each step is serialized with the other calls, as it reads the
+     * CommitGraph they may append to. */
+    public static synchronized Iterable<CommitObj> log() {
+        open();
+        Iterable<String> shas = CommitGraph.firstParents(
+                _currBranch.getCommitSha());
+        return () -> new Iterator<CommitObj>() {
+            private final Iterator<String> _shas = shas.iterator();
+
+            @Override
+            public boolean hasNext() {
+                synchronized (Repository.class) {
+                    return _shas.hasNext();
+                }
+            }
+
+            @Override
+            public CommitObj next() {
+                synchronized (Repository.class) {
+                    return CommitObj.read(_shas.next());
+                }
+            }
+        };
+    }
+
+    /** @return Iterable<CommitLog.Entry>
+     * Returns every commit ever made, in the order they were made, as of
+     * this call: commits made while the result is iterated over are left
+     * out. */
+    public static synchronized Iterable<CommitLog.Entry> globalLog() {
+        open();
+        return CommitLog.entries();
+    }
+
+    /** @return List<CommitLog.Entry>
+     * @param message STRING
+     * Returns the commits whose message is exactly MESSAGE. */
+    public static synchronized List<CommitLog.Entry> find(String message) {
+        open();
+        return CommitLog.find(message);
+    }
+
+    /** @return List<CommitLog.Entry>
+     * @param text STRING
+     * Returns the commits whose message contains TEXT. */
+    public static synchronized List<CommitLog.Entry> search(String text) {
+        open();
+        return CommitLog.search(text);
+    }
+
+    /** @return Status
+     * Returns the branches, the staging area, and how the working
+     * directory differs from the current commit and the staging area. */
+    public static synchronized Status status() {
+        open();
+        List<String> branches = new ArrayList<>();
+        for (String bName : Utils.plainFilenamesIn(Branch.BRANCH_FOLDER)) {
+            if (!bName.equals(Branch.CURR_BRANCH_FILE.getName())) {
+                branches.add(bName);
+            }
+        }
+        Collections.sort(branches);
+
+        TreeMap<File, String> tracked =
+                CommitObj.read(_currBranch.getCommitSha()).getBlobMap();
+        long t = Trace.start();
+        TreeMap<File, String> work = Walker.walk(WORK_DIR, StatCache::sha);
+        Trace.end("walk", t, work.size());
+        StatCache.save();
+        TreeSet<String> modified = new TreeSet<>();
+        TreeSet<String> untracked = new TreeSet<>();
+        SortedMap<String, String> added = Stage.getAdded();
+        SortedSet<String> removed = Stage.getRemoved();
+        for (File f : work.keySet()) {
+            String name = relName(f);
+            if (!added.containsKey(name)
+                    && (removed.contains(name) || !tracked.containsKey(f))) {
+                untracked.add(name);
+            }
+        }
+        TreeSet<File> files = new TreeSet<>(tracked.keySet());
+        for (String fName : added.keySet()) {
+            files.add(workFile(fName));
+        }
+        for (File f : files) {
+            String name = relName(f);
+            String expected = added.containsKey(name)
+                    ? added.get(name) : tracked.get(f);
+            if (work.get(f) == null) {
+                if (!removed.contains(name)) {
+                    modified.add(name + " (deleted)");
+                }
+            } else if (!removed.contains(name)
+                    && !work.get(f).equals(expected)) {
+                modified.add(name + " (modified)");
+            }
+        }
+        return new Status(branches, _currBranch.getName(),
+                new ArrayList<>(added.keySet()), new ArrayList<>(removed),
+                new ArrayList<>(modified), new ArrayList<>(untracked));
+    }
+
+    /** @param fileName STRING
+     * Takes the version of the file as it exists in the head commit,
+     * the front of the current branch, and puts it in the working directory,
+     * overwriting the version of the file that's already there if there
+     * is one. */
+    public static synchronized void checkoutFile(String fileName) {
+        open();
+        writeFile(_currBranch.getCommitSha(), fileName);
+    }
+
+    /** @param id STRING, a commit id or any unambiguous prefix of one.
+     * @param fileName STRING
+     * Takes the version of the file as it exists in the commit with the
+     * given id, and puts it in the working directory, overwriting the version
+     * of the file that's already there if there is one. */
+    public static synchronized void checkoutFile(String id, String fileName) {
+        open();
+        writeFile(resolve(id), fileName);
+    }
+
+    /** @param brName STRING
+     * Takes all files in the commit at the head of the given branch, and
+     * puts them in the working directory, overwriting the versions of the
+     * files that are already there if they exist. The given branch then
+     * becomes the current branch. */
+    public static synchronized void checkout(String brName) {
+        Transaction.locked(() -> {
+            open();
+            checkoutBranch(brName);
+            save();
+        });
+    }
+
+    /** @param brName String
+     * Creates a new branch with the given name, and points it at the
+     * current head node. */
+    public static synchronized void branch(String brName) {
+        retry(() -> {
+            open();
+            File f = Utils.join(Branch.BRANCH_FOLDER, brName);
+            if (Transaction.read(f) != null) {
+                throw new GitletException(
+                        "A branch with that name already exists.");
+            }
+            new Branch(brName, _currBranch.getCommitSha());
+            Transaction.commit();
+        });
+    }
+
+    /** @param brName STRING
+     * Deletes the branch with the given name. */
+    public static synchronized void rmBranch(String brName) {
+        retry(() -> {
+            open();
+            if (_currBranch.getName().equals(brName)) {
+                throw new GitletException(
+                        "Cannot remove the current branch.");
+            }
+            File bF = Utils.join(Branch.BRANCH_FOLDER, brName);
+            if (Transaction.read(bF) == null) {
+                throw new GitletException(
+                        "A branch with that name does not exist.");
+            }
+            Transaction.delete(bF);
+            Transaction.commit();
+        });
+    }
+
+    /** @param id STRING, a commit id or any unambiguous prefix of one.
+     * Checks out all the files tracked by the given commit.
+     *  Removes tracked files that are not present in that commit.
+     *  Also moves the current branch's head to that commit node. */
+    public static synchronized void reset(String id) {
+        Transaction.locked(() -> {
+            open();
+            resetTo(resolve(id));
+            save();
+        });
+    }
+
+    /** @return Merge
+     * @param brName STRING
+     * Merges files from the given branch, or the commit with that id or
+     * prefix of one, into the current branch, and returns how. */
+    public static synchronized Merge merge(String brName) {
+        return Transaction.locked(() -> mergeBranch(brName));
+    }
+
+    /** @return Merge
+     * @param brName STRING
+     * Does the work of merge. */
+    private static Merge mergeBranch(String brName) {
+        open();
+        String givSha = revision(brName);
+        CommitObj spCom = CommitObj.read(splitPoint(givSha));
+        CommitObj givCom = CommitObj.read(givSha);
+        if (brName.equals(_currBranch.getName())) {
+            throw new GitletException("Cannot merge a branch with itself.");
+        }
+        if (!Stage.isEmpty()) {
+            throw new GitletException("You have uncommitted changes.");
+        }
+        if (givCom.getSha().equals(spCom.getSha())) {
+            throw new GitletException("Given branch is an ancestor "
+                    + "of the current branch.");
+        }
+        Branch currBr = Utils.readObject(Utils.join
+                (Branch.BRANCH_FOLDER, _currBranch.getName()), Branch.class);
+        CommitObj currCom = CommitObj.read(currBr.getCommitSha());
+        if (currCom.getSha().equals(spCom.getSha())) {
+            if (Utils.join(Branch.BRANCH_FOLDER, brName).exists()) {
+                checkoutBranch(brName);
+            } else {
+                resetTo(givSha);
+            }
+            save();
+            return new Merge(givCom, true, Collections.emptyList());
+        }
+        TreeMap<File, String> givMap = givCom.getBlobMap();
+        TreeMap<File, String> currMap = currCom.getBlobMap();
+        TreeMap<File, String> spMap = spCom.getBlobMap();
+        Set<File> files = new TreeSet<>(); files.addAll(givMap.keySet());
+        files.addAll(currMap.keySet()); files.addAll(spMap.keySet());
+        for (File f : files) {
+            String givBlob = givMap.get(f); String currBlob = currMap.get(f);
+            String spBlob = spMap.get(f);
+            if (spBlob == null && givBlob != null && currBlob == null
+                    && (f.isDirectory() || f.isFile()
+                    && !givBlob.equals(StatCache.sha(f)))) {
+                throw new GitletException("There is an untracked file"
+                        + " in the way; delete it, or add and commit"
+                        + " it first.");
+            }
+        }
+        List<String> conflicts = checkConds(givCom, files, spMap, currMap,
+                givMap);
+        CommitObj res = newCommit("Merged " + brName + " into "
+                + _currBranch.getName() + ".", givSha);
+        save();
+        return new Merge(res, false, conflicts);
+    }
+
+    /** @return List<String>
+     * @param brName STRING
+     * Returns every best common ancestor of the current branch and the
+     * branch BRNAME, or the commit with that id, newest first. */
+    public static synchronized List<String> mergeBase(String brName) {
+        open();
+        return MergeBase.bases(_currBranch.getCommitSha(), revision(brName));
+    }
+
+    /** @return Collector.Report
+     * @param grace LONG, in seconds.
+     * @param dryRun BOOLEAN
+     * Removes every object that no branch and no staged file reaches
+     * and that is older than GRACE, or only reports them if DRYRUN. */
+    public static synchronized Collector.Report gc(long grace,
+                                                   boolean dryRun) {
+        return Transaction.locked(() -> {
+            open();
+            TreeMap<String, String> heads = new TreeMap<>();
+            for (String bName
+                    : Utils.plainFilenamesIn(Branch.BRANCH_FOLDER)) {
+                if (!bName.equals(Branch.CURR_BRANCH_FILE.getName())) {
+                    heads.put(bName, revision(bName));
+                }
+            }
+            heads.put(_currBranch.getName(), _currBranch.getCommitSha());
+            return Collector.run(heads, Stage.getAdded().values(), grace,
+                    dryRun);
+        });
+    }
+
+    /** Moves every loose object into the pack. */
+    public static synchronized void repack() {
+        Transaction.locked(() -> {
+            open();
+            Pack.repack();
+        });
+    }
+
+    /** @return String
+     * Returns the name of the current branch. */
+    public static synchronized String currentBranch() {
+        open();
+        return _currBranch.getName();
+    }
+
+    /** @return String
+     * @param id STRING
+     * Returns the SHA1 of the one commit whose id starts with ID, found
+     * by binary search of the CommitGraph. Any prefix will do as long as
+     * no other commit shares it. */
+    public static synchronized String resolve(String id) {
+        long t = Trace.start();
+        List<String> matches = CommitGraph.withPrefix(id);
+        Trace.end("resolve", t, 0);
+        if (matches.isEmpty()) {
+            throw new GitletException("No commit with that id exists.");
+        }
+        if (matches.size() > 1) {
+            throw new GitletException("Commit id " + id + " is ambiguous.");
+        }
+        return matches.get(0);
+    }
+
+    /** @return String
+     * @param name STRING
+     * Returns the SHA1 of the head of the branch NAME or, failing that, of
+     * the commit NAME resolves to. */
+    public static synchronized String revision(String name) {
+        File brF = Utils.join(Branch.BRANCH_FOLDER, name);
+        if (brF.exists()) {
+            return Utils.readObject(brF, Branch.class).getCommitSha();
+        }
+        if (CommitGraph.withPrefix(name).isEmpty()) {
+            throw new GitletException(
+                    "A branch with that name does not exist.");
+        }
+        return resolve(name);
+    }
+
+    /** This class is what status finds: the branches and the files in
+     * each section of the command's output, each sorted by name. */
+    public static class Status {
+        /** A Status of these parameters.
+         * @param branches LIST<STRING>
+         * @param current STRING
+         * @param staged LIST<STRING>
+         * @param removed LIST<STRING>
+         * @param modified LIST<STRING>
+         * @param untracked LIST<STRING> */
+        Status(List<String> branches, String current, List<String> staged,
+               List<String> removed, List<String> modified,
+               List<String> untracked) {
+            _branches = branches;
+            _current = current;
+            _staged = staged;
+            _removed = removed;
+            _modified = modified;
+            _untracked = untracked;
+        }
+
+        /** @return List<String>
+         * Getter method for _branches. */
+        public List<String> getBranches() {
+            return _branches;
+        }
+
+        /** @return String
+         * Getter method for _current. */
+        public String getCurrent() {
+            return _current;
+        }
+
+        /** @return List<String>
+         * Getter method for _staged. */
+        public List<String> getStaged() {
+            return _staged;
+        }
+
+        /** @return List<String>
+         * Getter method for _removed. */
+        public List<String> getRemoved() {
+            return _removed;
+        }
+
+        /** @return List<String>
+         * Getter method for _modified. */
+        public List<String> getModified() {
+            return _modified;
+        }
+
+        /** @return List<String>
+         * Getter method for _untracked. */
+        public List<String> getUntracked() {
+            return _untracked;
+        }
+
+        /** Every branch. */
+        private final List<String> _branches;
+
+        /** The current branch. */
+        private final String _current;
+
+        /** Files staged for addition. */
+        private final List<String> _staged;
+
+        /** Files staged for removal. */
+        private final List<String> _removed;
+
+        /** Files changed or deleted since they were committed or staged,
+         * followed by " (modified)" or " (deleted)". */
+        private final List<String> _modified;
+
+        /** Files neither tracked nor staged. */
+        private final List<String> _untracked;
+    }
+
+    /** This class is what merge did: the commit the current branch now
+     * points to, whether it was simply moved there, and which files
+     * were left with conflict markers. */
+    public static class Merge {
+        /** A Merge of these parameters.
+         * @param commit COMMITOBJ
+         * @param fastForward BOOLEAN
+         * @param conflicts LIST<STRING> */
+        Merge(CommitObj commit, boolean fastForward, List<String> conflicts) {
+            _commit = commit;
+            _fastForward = fastForward;
+            _conflicts = conflicts;
+        }
+
+        /** @return CommitObj
+         * Getter method for _commit. */
+        public CommitObj getCommit() {
+            return _commit;
+        }
+
+        /** @return boolean
+         * Getter method for _fastForward. */
+        public boolean isFastForward() {
+            return _fastForward;
+        }
+
+        /** @return List<String>
+         * Getter method for _conflicts. */
+        public List<String> getConflicts() {
+            return _conflicts;
+        }
+
+        /** The new head of the current branch. */
+        private final CommitObj _commit;
+
+        /** Whether the current branch was fast-forwarded. */
+        private final boolean _fastForward;
+
+        /** Files left with conflict markers, to be fixed and committed. */
+        private final List<String> _conflicts;
+    }
+
+    /** @param fileName STRING
+     * Stages the file or the files under the directory FILENAME. */
+    private static void stageFile(String fileName) {
+        File t1 = workFile(fileName);
+        if (!t1.exists()) {
+            throw new GitletException("File does not exist.");
+        }
+
+        CommitObj c = CommitObj.read(_currBranch.getCommitSha());
+        if (t1.isDirectory()) {
+            TreeMap<File, String> tracked = c.getBlobMap();
+            TreeMap<File, String> found = Walker.walk(t1, Repository::store);
+            for (Map.Entry<File, String> e : found.entrySet()) {
+                stage(e.getKey(), e.getValue(), tracked.get(e.getKey()));
+            }
+        } else {
+            stage(t1, store(t1), c.getBlob(t1));
+        }
+        StatCache.save();
+    }
+
+    /** @return String
+     * @param f FILE
+     * Makes sure the contents of F are stored as a Blob and returns its
+     * SHA1. A file unchanged since the StatCache last saw it, whose Blob
+     * is already stored, is not read at all, though the Blob is freshened
+     * for gc; otherwise it is hashed and stored in one pass. */
+    private static String store(File f) {
+        String sha = StatCache.sha(f, Blob::store);
+        if (!Blob.freshen(sha)) {
+            sha = Blob.store(f);
+        }
+        return sha;
+    }
+
+    /** @param f FILE
+     * @param sha STRING
+     * @param comSha STRING
+     * Stages F, whose contents are the stored Blob SHA, for addition,
+     * unless the current commit already tracks it as COMSHA. */
+    private static void stage(File f, String sha, String comSha) {
+        if (Objects.equals(comSha, sha)) {
+            Stage.unstage(relName(f));
+        } else {
+            Stage.stage(relName(f), sha);
+        }
+    }
+
+    /** @return CommitObj
+     * @param message STRING
+     * @param parent2Sha STRING[]
+     * Commits the staging area with MESSAGE, and the second parent
+     * PARENT2SHA if there is one, and returns the commit. */
+    private static CommitObj newCommit(String message, String... parent2Sha) {
+        if (Stage.isEmpty()) {
+            throw new GitletException("No changes added to the commit.");
+        }
+        if (message.isEmpty()) {
+            throw new GitletException("Please enter a commit message.");
+        }
+
+        CommitObj newCom;
+        if (parent2Sha.length == 1) {
+            newCom = new CommitObj(message,
+                    _currBranch.getCommitSha(), parent2Sha);
+        } else {
+            newCom = new CommitObj(message, _currBranch.getCommitSha());
+        }
+        _currBranch.reSha(newCom);
+        Stage.clear();
+        return newCom;
+    }
+
+    /** @param fileName STRING
+     * Does the work of rm. */
+    private static void unstageFile(String fileName) {
+        File fWor = workFile(fileName);
+        String name = relName(fWor);
+        CommitObj c = CommitObj.read(_currBranch.getCommitSha());
+        String tracked = c.getBlob(fWor);
+
+        if (!Stage.getAdded().containsKey(name) && tracked == null) {
+            throw new GitletException("No reason to remove the file.");
+        }
+
+        Stage.unstageAdd(name);
+
+        if (tracked != null) {
+            Stage.stageRemoval(name);
+            if (fWor.exists()) {
+                removeFile(fWor);
+            }
+        }
+    }
+
+    /** @param comSha STRING
+     * @param fileName STRING
+     * Writes the version of FILENAME in the commit COMSHA to the working
+     * directory. */
+    private static void writeFile(String comSha, String fileName) {
+        CommitObj c = CommitObj.read(comSha);
+
+        File extFile = workFile(fileName);
+        String blobSha = c.getBlob(extFile);
+        if (blobSha == null) {
+            throw new GitletException("File does not exist in that commit.");
+        }
+
+        Blob.write(blobSha, extFile);
+    }
+
+    /** @param brName STRING
+     * Does the work of checkout of a branch. */
+    private static void checkoutBranch(String brName) {
+        File brF = Utils.join(Branch.BRANCH_FOLDER, brName);
+        if (!brF.exists()) {
+            throw new GitletException("No such branch exists.");
+        }
+        Branch br = Utils.readObject(brF, Branch.class);
+        if (_currBranch.getCommitSha().equals(br.getCommitSha())
+                && _currBranch.getName().equals(br.getName())) {
+
+            throw new GitletException(
+                    "No need to checkout the current branch.");
+        }
+
+        Checkout.run(CommitObj.read(_currBranch.getCommitSha()),
+                CommitObj.read(br.getCommitSha()));
+        Stage.clear();
+
+        _currBranch = br;
+    }
+
+    /** @param comID STRING
+     * Does the work of reset to the commit COMID. */
+    private static void resetTo(String comID) {
+        CommitObj resCom = CommitObj.read(comID);
+        Checkout.run(CommitObj.read(_currBranch.getCommitSha()), resCom);
+        Stage.clear();
+
+        File assocBrF = Utils.join(Branch.BRANCH_FOLDER,
+                _currBranch.getName());
+        Branch assocBr = Utils.readObject(assocBrF, Branch.class);
+        assocBr.reSha(resCom);
+
+        _currBranch = assocBr;
+    }
+
+    /** @return List<String>
+     * @param givCom COMMITOBJ
+     * @param files SET<FILE>
+     * @param spMap TREEMAP<FILE, STRING>
+     * @param currMap TREEMAP<FILE, STRING>
+     * @param givMap TREEMAP<FILE, STRING>
+     * Helper method to check merge scenarios. Returns the files left with
+     * conflict markers. */
+    private static List<String> checkConds(CommitObj givCom, Set<File> files,
+                                           TreeMap<File, String> spMap,
+                                           TreeMap<File, String> currMap,
+                                           TreeMap<File, String> givMap) {
+        List<String> conflicts = new ArrayList<>();
+        for (File f : files) {
+            String givBlob = givMap.get(f); String currBlob = currMap.get(f);
+            String spBlob = spMap.get(f);
+            if (spBlob == null && givBlob == null
+                    && currBlob != null) {
+                continue;
+            }
+            if (spBlob == null && givBlob != null
+                    && currBlob == null) {
+                writeFile(givCom.getSha(), relName(f));
+                stageFile(relName(f));
+                continue;
+            }
+            if (spBlob != null && givBlob == null
+                    && currBlob != null && spBlob.equals(currBlob)) {
+                unstageFile(relName(f));
+                continue;
+            }
+            if (spBlob != null && givBlob == null
+                    && currBlob == null) {
+                continue;
+            }
+            if (mergeConflict(f, spBlob, currBlob, givBlob)) {
+                stageFile(relName(f));
+                conflicts.add(relName(f));
+                continue;
+            }
+            if (spBlob != null && givBlob != null
+                    && currBlob == null) {
+                continue;
+            }
+            if (!givBlob.equals(spBlob) && currBlob.equals(spBlob)) {
+                writeFile(givCom.getSha(), relName(f));
+                stageFile(relName(f));
+                continue;
+            }
+        }
+        return conflicts;
+    }
+
+    /** @return boolean
+     * @param f FILE
+     * @param spBlob STRING
+     * @param currBlob STRING
+     * @param givBlob STRING
+     * Helper function to handle conficts for merge. */
+    private static boolean mergeConflict(File f, String spBlob,
+                                         String currBlob, String givBlob) {
+        if ((spBlob == null && !givBlob.equals(currBlob))
+                || (currBlob == null && !spBlob.equals(givBlob))
+                || (givBlob == null && !spBlob.equals(currBlob))
+                || (!givBlob.equals(currBlob) && !spBlob.equals(givBlob)
+                && !spBlob.equals(currBlob))) {
+            f.getParentFile().mkdirs();
+            Utils.writeContents(f, "<<<<<<< HEAD\n"
+                    + (currBlob == null ? "" : new String(Blob.read(currBlob)))
+                    + "=======\n"
+                    + (givBlob == null ? "" : new String(Blob.read(givBlob)))
+                    + ">>>>>>>\n");
+            return true;
+        }
+        return false;
+    }
+
+    /** @return String
+     * @param givSha STRING
+     * Returns the splitPoint of the current branch and commit GIVSHA: the
+     * newest of their best common ancestors. */
+    private static String splitPoint(String givSha) {
+        return MergeBase.bases(_currBranch.getCommitSha(), givSha).get(0);
+    }
+
+    /** Starts a call on an existing repository. */
+    private static void open() {
+        if (!DOT_GITLET.exists()) {
+            throw new GitletException(
+                    "Not in an initialized Gitlet directory.");
+        }
+        load();
+    }
+
+    /** Forgets what earlier calls read of the staging area and current
+     * branch, which other processes may have changed, makes any
+     * folders of /.gitlet which are missing, finishes any Transaction a
+     * crash cut short and begins a new one. */
+    private static void load() {
+        long t = Trace.start();
+        Stage.invalidate();
+        File[] folders = {DOT_GITLET, CommitObj.COMMIT_FOLDER,
+            Blob.BLOB_FOLDER, Branch.BRANCH_FOLDER, Pack.PACK_FOLDER,
+            Tree.TREE_FOLDER, Transaction.TXN_FOLDER};
+        for (File folder : folders) {
+            if (!folder.exists()) {
+                folder.mkdir();
+            }
+        }
+        Transaction.recover();
+        Transaction.begin();
+
+        _currBranch = null;
+        _loadedHead = null;
+        byte[] curr = Transaction.read(Branch.CURR_BRANCH_FILE);
+        if (curr != null) {
+            _currBranch = Pack.deserialize(curr, Branch.class);
+            _loadedHead = head();
+        }
+        Trace.end("load", t, 0);
+    }
+
+    /** Saves the staging area and current branch at the end of a call
+     * which succeeded, makes the current branch's own file agree, and
+     * commits the Transaction, so that all of them change together. */
+    private static void save() {
+        long t = Trace.start();
+        Stage.save();
+        if (!head().equals(_loadedHead)) {
+            Transaction.write(Branch.CURR_BRANCH_FILE,
+                    Utils.serialize(_currBranch));
+            File bF = Utils.join(Branch.BRANCH_FOLDER,
+                    _currBranch.getName());
+            Branch assocB = Pack.deserialize(Transaction.read(bF),
+                    Branch.class);
+            if (!_currBranch.getCommitSha().equals(assocB.getCommitSha())) {
+                assocB.reSha(CommitObj.read(_currBranch.getCommitSha()));
+                assocB.saveBranch();
+            }
+        }
+        Transaction.commit();
+        _loadedHead = head();
+        Trace.end("save", t, 0);
+    }
+
+    /** @return String
+     * Returns the name and commit of the current branch, as one string. */
+    private static String head() {
+        return _currBranch.getName() + " " + _currBranch.getCommitSha();
+    }
+
+    /** @return T
+     * @param call SUPPLIER<T>
+     * Returns the result of CALL, which changes /.gitlet, running it
+     * again from the start whenever its Transaction meets a Conflict. */
+    private static <T> T retry(Supplier<T> call) {
+        for (int i = 0;; i += 1) {
+            try {
+                return call.get();
+            } catch (Transaction.Conflict e) {
+                if (i == RETRIES) {
+                    throw new GitletException("Other gitlet commands kept"
+                            + " changing the repository; try again.");
+                }
+            }
+        }
+    }
+
+    /** @param call RUNNABLE
+     * Runs CALL, which changes /.gitlet, like retry(SUPPLIER). */
+    private static void retry(Runnable call) {
+        retry(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /** @return File
+     * @param name STRING
+     * Returns the file in WORK_DIR at the relative path NAME. */
+    static File workFile(String name) {
+        return Utils.join(WORK_DIR, Paths.get(name).normalize().toString());
+    }
+
+    /** @return String
+     * @param f FILE
+     * Returns the path of F relative to WORK_DIR. */
+    static String relName(File f) {
+        return WORK_DIR.toPath().relativize(f.toPath()).toString();
+    }
+
+    /** @param f FILE
+     * Deletes F from the working directory, along with any directories
+     * that this leaves empty. */
+    static void removeFile(File f) {
+        f.delete();
+        File dir = f.getParentFile();
+        while (dir != null && !dir.equals(WORK_DIR) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /** A copy of the Branch of the current commit. */
+    private static Branch _currBranch = null;
+
+    /** What head() returned when _currBranch was read, or null if there
+     * was no current branch. */
+    private static String _loadedHead = null;
+}
@@ -0,0 +1,179 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** This class is the staging area. It is kept in the single file
+ * INDEX_FILE as a list of entries sorted by path, each holding a state
+ * byte and, for an addition, the binary SHA1 of the staged Blob. The
+ * Blob itself lives in Blob.BLOB_FOLDER like any other.
+ * @author Parth Shisode */
+public class Stage {
+    /** The file holding the staging area in /.gitlet. */
+    static final File INDEX_FILE = Utils.join(Repository.DOT_GITLET, "index");
+
+    /** The first four bytes of INDEX_FILE, "GIX1". */
+    static final int MAGIC = 0x47495831;
+
+    /** State of a file staged for addition. */
+    static final byte ADD = 1;
+
+    /** State of a file staged for removal. */
+    static final byte REMOVE = 2;
+
+    /** @param name STRING
+     * @param sha STRING
+     * Stages the file at relative path NAME for addition as Blob SHA. */
+    static void stage(String name, String sha) {
+        load();
+        _added.put(name, sha);
+        _removed.remove(name);
+        _dirty = true;
+    }
+
+    /** @param name STRING
+     * Stages the file at relative path NAME for removal. */
+    static void stageRemoval(String name) {
+        load();
+        _added.remove(name);
+        _removed.add(name);
+        _dirty = true;
+    }
+
+    /** @param name STRING
+     * Unstages NAME if it is staged for addition. */
+    static void unstageAdd(String name) {
+        load();
+        _dirty |= _added.remove(name) != null;
+    }
+
+    /** @param name STRING
+     * Unstages NAME, whether it is staged for addition or removal. */
+    static void unstage(String name) {
+        load();
+        _dirty |= _added.remove(name) != null;
+        _dirty |= _removed.remove(name);
+    }
+
+    /** Empties the staging area. */
+    static void clear() {
+        load();
+        _dirty |= !isEmpty();
+        _added.clear();
+        _removed.clear();
+    }
+
+    /** @return boolean
+     * Returns whether nothing is staged. */
+    static boolean isEmpty() {
+        load();
+        return _added.isEmpty() && _removed.isEmpty();
+    }
+
+    /** @return SortedMap<String, String>
+     * Returns the relative paths staged for addition and their Blobs. */
+    static SortedMap<String, String> getAdded() {
+        load();
+        return Collections.unmodifiableSortedMap(_added);
+    }
+
+    /** @return SortedSet<String>
+     * Returns the relative paths staged for removal. */
+    static SortedSet<String> getRemoved() {
+        load();
+        return Collections.unmodifiableSortedSet(_removed);
+    }
+
+    /** Writes the staging area back to INDEX_FILE if it has changed. The
+     * new index is written to a file of the Transaction and renamed over
+     * the old one when it commits, so a reader always sees one or the
+     * other in full. */
+    static void save() {
+        if (!_dirty) {
+            return;
+        }
+        TreeSet<String> names = new TreeSet<>(_added.keySet());
+        names.addAll(_removed);
+        File tmp = Transaction.tempFile("index");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(names.size());
+                for (String name : names) {
+                    out.writeUTF(name);
+                    if (_added.containsKey(name)) {
+                        out.writeByte(ADD);
+                        out.write(Pack.toBytes(_added.get(name)));
+                    } else {
+                        out.writeByte(REMOVE);
+                    }
+                }
+            }
+            Transaction.add(tmp, INDEX_FILE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _dirty = false;
+    }
+
+    /** Forgets the staging area read from INDEX_FILE, which is read
+     * again when next needed. */
+    static void invalidate() {
+        _added = null;
+        _removed = null;
+        _dirty = false;
+    }
+
+    /** Reads INDEX_FILE through the Transaction, if it has not been read
+     * yet. */
+    private static void load() {
+        if (_added != null) {
+            return;
+        }
+        _added = new TreeMap<>();
+        _removed = new TreeSet<>();
+        byte[] index = Transaction.read(INDEX_FILE);
+        if (index == null) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(index))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("corrupt index");
+            }
+            byte[] sha = new byte[Pack.SHA_BYTES];
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String name = in.readUTF();
+                if (in.readByte() == ADD) {
+                    in.readFully(sha);
+                    _added.put(name, Pack.toHex(sha));
+                } else {
+                    _removed.add(name);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Relative paths staged for addition and their Blobs, or null if
+     * INDEX_FILE has not been read. */
+    private static TreeMap<String, String> _added;
+
+    /** Relative paths staged for removal. */
+    private static TreeSet<String> _removed;
+
+    /** Whether the staging area differs from INDEX_FILE. */
+    private static boolean _dirty;
+}
@@ -0,0 +1,180 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/** This class remembers the SHA1 of each file in the working directory
+ * along with its modification time, size and inode, so that a file is
+ * only hashed again once one of those has changed.
+ * @author Parth Shisode */
+public class StatCache {
+    /** The file holding the cache in /.gitlet. */
+    static final File CACHE_FILE = Utils.join(Repository.DOT_GITLET,
+            "statcache");
+
+    /** The first four bytes of CACHE_FILE, "GSC1". */
+    static final int MAGIC = 0x47534331;
+
+    /** Files modified this many milliseconds before they were hashed may
+     * change again without their modification time changing, so they are
+     * not cached. */
+    static final long GRANULARITY = 1000;
+
+    /** @return String
+     * @param f FILE
+     * Returns the SHA1 of the contents of F, hashing it only if it has
+     * changed since it was cached. Safe to call from many threads. */
+    static String sha(File f) {
+        return sha(f, Blob::hash);
+    }
+
+    /** @return String
+     * @param f FILE
+     * @param hasher FUNCTION<FILE, STRING>
+     * Like sha(F), but uses HASHER, which may also store F, to find the
+     * SHA1 of F when it has changed. */
+    static String sha(File f, Function<File, String> hasher) {
+        load();
+        String name = Repository.relName(f);
+        long[] stat = stat(f);
+        Entry e = _entries.get(name);
+        if (e != null && e._mtime == stat[0] && e._size == stat[1]
+                && e._inode == stat[2]) {
+            return e._sha;
+        }
+        long hashedAt = System.currentTimeMillis();
+        String sha = hasher.apply(f);
+        if (stat[0] < hashedAt - GRANULARITY) {
+            _entries.put(name, new Entry(stat[0], stat[1], stat[2], sha));
+        } else {
+            _entries.remove(name);
+        }
+        _dirty = true;
+        return sha;
+    }
+
+    /** Writes the cache back to CACHE_FILE if it has changed, dropping
+     * files which no longer exist. */
+    static void save() {
+        if (!_dirty) {
+            return;
+        }
+        _entries.keySet().removeIf(n -> !Repository.workFile(n).isFile());
+        try {
+            File tmp = File.createTempFile("statcache", ".tmp",
+                    Repository.DOT_GITLET);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(_entries.size());
+                for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue()._mtime);
+                    out.writeLong(e.getValue()._size);
+                    out.writeLong(e.getValue()._inode);
+                    out.writeUTF(e.getValue()._sha);
+                }
+            }
+            Files.move(tmp.toPath(), CACHE_FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _dirty = false;
+    }
+
+    /** Reads CACHE_FILE, if it has not been read yet. A missing or
+     * unreadable cache is simply treated as empty. */
+    private static synchronized void load() {
+        if (_entries != null) {
+            return;
+        }
+        ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+        if (CACHE_FILE.exists()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(
+                            new FileInputStream(CACHE_FILE)))) {
+                if (in.readInt() == MAGIC) {
+                    for (int n = in.readInt(); n > 0; n -= 1) {
+                        String name = in.readUTF();
+                        entries.put(name, new Entry(in.readLong(),
+                                in.readLong(), in.readLong(), in.readUTF()));
+                    }
+                }
+            } catch (IOException e) {
+                entries.clear();
+            }
+        }
+        _entries = entries;
+    }
+
+    /** @return long[]
+     * @param f FILE
+     * Returns the modification time, size and inode number of F. The inode
+     * is 0 where the file system does not report one. */
+    private static long[] stat(File f) {
+        try {
+            BasicFileAttributes a = Files.readAttributes(f.toPath(),
+                    BasicFileAttributes.class);
+            long inode = 0;
+            try {
+                inode = ((Number) Files.getAttribute(f.toPath(),
+                        "unix:ino")).longValue();
+            } catch (UnsupportedOperationException
+                     | IllegalArgumentException e) {
+                inode = 0;
+            }
+            return new long[] {a.lastModifiedTime().toMillis(), a.size(),
+                inode};
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** The cached stat data and SHA1 of one file. */
+    private static class Entry {
+        /** Creates an Entry with these parameters.
+         * @param mtime LONG
+         * @param size LONG
+         * @param inode LONG
+         * @param sha STRING */
+        Entry(long mtime, long size, long inode, String sha) {
+            _mtime = mtime;
+            _size = size;
+            _inode = inode;
+            _sha = sha;
+        }
+
+        /** Modification time of the file in milliseconds. */
+        private final long _mtime;
+
+        /** Size of the file in bytes. */
+        private final long _size;
+
+        /** Inode number of the file, or 0. */
+        private final long _inode;
+
+        /** SHA1 of the contents of the file. */
+        private final String _sha;
+    }
+
+    /** The cache, keyed by path relative to WORK_DIR, or null if it has
+     * not been loaded. */
+    private static ConcurrentHashMap<String, Entry> _entries;
+
+    /** Whether _entries differs from CACHE_FILE. */
+    private static volatile boolean _dirty;
+}
@@ -0,0 +1,168 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** This class records where a command spends its time: for each phase of
+ * a command, such as loading the current branch or diffing two Trees, and
+ * each kind of read or write of /.gitlet, how many times it happened,
+ * how many bytes it moved and how many nanoseconds it took.
+ *
+ * Tracing is off unless a command is run with --trace, or GITLET_TRACE
+ * is set in the environment. When a traced command ends, its totals are
+ * printed to System.err, as a table or, with --trace=json or
+ * GITLET_TRACE=json, as one JSON object per line. A phase is timed with
+ *     long t = Trace.start();
+ *     ...
+ *     Trace.end("phase", t, bytes);
+ * which costs one field read when tracing is off.
+ * @author Parth Shisode */
+public class Trace {
+
+    /** @return String[]
+     * @param args STRING[]
+     * Starts tracing the command ARGS, if it begins with --trace or
+     * GITLET_TRACE is set, and returns ARGS without the option. */
+    static String[] begin(String... args) {
+        String mode = System.getenv("GITLET_TRACE");
+        if (args.length > 0 && args[0].startsWith("--trace")) {
+            mode = args[0].equals("--trace=json") ? "json" : "";
+        }
+        args = command(args);
+        synchronized (Trace.class) {
+            _totals.clear();
+            _json = "json".equals(mode);
+            _command = String.join(" ", args);
+            _hits = ObjectCache.hits();
+            _misses = ObjectCache.misses();
+            _on = mode != null;
+        }
+        return args;
+    }
+
+    /** @return String[]
+     * @param args STRING[]
+     * Returns ARGS without the --trace option, if it begins with one. */
+    static String[] command(String... args) {
+        if (args.length == 0 || !args[0].startsWith("--trace")) {
+            return args;
+        }
+        String[] rest = new String[args.length - 1];
+        System.arraycopy(args, 1, rest, 0, rest.length);
+        return rest;
+    }
+
+    /** @return boolean
+     * @param args STRING[]
+     * Returns whether ARGS, or GITLET_TRACE in the environment, ask for
+     * the command to be traced. */
+    static boolean requested(String... args) {
+        return args.length > 0 && args[0].startsWith("--trace")
+                || System.getenv("GITLET_TRACE") != null;
+    }
+
+    /** @return long
+     * Returns the time a phase starts, or 0 if tracing is off. */
+    static long start() {
+        return _on ? System.nanoTime() : 0;
+    }
+
+    /** @param phase STRING
+     * @param start LONG, from start().
+     * @param bytes LONG
+     * Adds one PHASE, begun at START and moving BYTES, to the totals. */
+    static void end(String phase, long start, long bytes) {
+        if (!_on) {
+            return;
+        }
+        long ns = System.nanoTime() - start;
+        synchronized (Trace.class) {
+            long[] t = _totals.computeIfAbsent(phase, p -> new long[3]);
+            t[0] += 1;
+            t[1] += bytes;
+            t[2] += ns;
+        }
+    }
+
+    /** @param phase STRING
+     * @param start LONG, from start().
+     * @param f FILE, which the phase read or wrote whole.
+     * Adds one PHASE, begun at START, which moved the bytes of F. */
+    static void end(String phase, long start, File f) {
+        if (_on) {
+            end(phase, start, f.length());
+        }
+    }
+
+    /** Prints the totals of the command being traced to System.err and
+     * stops tracing. */
+    static synchronized void finish() {
+        if (!_on) {
+            return;
+        }
+        _on = false;
+        long hits = ObjectCache.hits() - _hits;
+        long misses = ObjectCache.misses() - _misses;
+        StringBuilder out = new StringBuilder();
+        if (_json) {
+            for (Map.Entry<String, long[]> e : _totals.entrySet()) {
+                long[] t = e.getValue();
+                out.append(String.format("{\"command\": \"%s\", \"phase\": "
+                        + "\"%s\", \"count\": %d, \"bytes\": %d, \"ns\": %d}%n",
+                        escape(_command), e.getKey(), t[0], t[1], t[2]));
+            }
+            out.append(String.format("{\"command\": \"%s\", \"phase\": "
+                    + "\"cache\", \"hits\": %d, \"misses\": %d}%n",
+                    escape(_command), hits, misses));
+        } else {
+            out.append("trace: ").append(_command).append('\n');
+            out.append(String.format("%-16s %8s %12s %10s%n", "phase",
+                    "count", "bytes", "ms"));
+            for (Map.Entry<String, long[]> e : _totals.entrySet()) {
+                long[] t = e.getValue();
+                out.append(String.format("%-16s %8d %12d %10.3f%n",
+                        e.getKey(), t[0], t[1], t[2] / 1e6));
+            }
+            out.append(String.format("cache: %d hits, %d misses%n", hits,
+                    misses));
+        }
+        System.err.print(out);
+        System.err.flush();
+    }
+
+    /** @return String
+     * @param s STRING
+     * Returns S escaped for a JSON string. */
+    private static String escape(String s) {
+        StringBuilder res = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                res.append('\\').append(c);
+            } else if (c < ' ') {
+                res.append(String.format("\\u%04x", (int) c));
+            } else {
+                res.append(c);
+            }
+        }
+        return res.toString();
+    }
+
+    /** Whether the current command is being traced. */
+    private static volatile boolean _on;
+
+    /** Whether to print JSON lines rather than a table. */
+    private static boolean _json;
+
+    /** The command being traced. */
+    private static String _command;
+
+    /** Count, bytes and nanoseconds of each phase, by name. */
+    private static final TreeMap<String, long[]> _totals = new TreeMap<>();
+
+    /** ObjectCache hits when the command began. */
+    private static long _hits;
+
+    /** ObjectCache misses when the command began. */
+    private static long _misses;
+}
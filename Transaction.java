@@ -0,0 +1,552 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/** This class makes each call which changes /.gitlet all or nothing,
+ * and durable once it returns, even if the machine crashes part way.
+ *
+ * While a call runs, every object it stores and every file it replaces,
+ * such as a Branch, CURR_BRANCH or the index, is written to a temporary
+ * file in TXN_FOLDER rather than where it belongs, and find() lets the
+ * call read what it has written so far. commit() then
+ *   1. fsyncs all of the temporary files at once, as one batch,
+ *   2. writes and fsyncs JOURNAL_FILE, listing where each one goes,
+ *   3. renames each into place, and fsyncs the folders they went to,
+ *   4. empties the journal.
+ * The journal is the point of no return: a crash before it is written
+ * leaves only temporary files, which load() throws away, and a crash
+ * after leaves a journal, which load() finishes. A call which fails
+ * simply never commits, and the next call throws its files away. Blobs
+ * are stored by several threads at once, so everything touching the
+ * files of the transaction is synchronized.
+ *
+ * Several processes may use one repository at once. Each keeps its
+ * temporary files in its own folder of TXN_FOLDER, and steps 2 to 4 are
+ * done holding LOCK_FILE, locked with FileChannel.tryLock and retried
+ * until it is free. Every branch, CURR_BRANCH or index a transaction read
+ * through read() is compared, while locked, with what is there now, and
+ * if any has changed, commit() throws a Conflict instead: the call read
+ * a state some other process has since replaced, so it must be run
+ * again. Calls that only read never take the lock, and see each file
+ * either before or after a rename, never in between.
+ * @author Parth Shisode */
+public class Transaction {
+
+    /** Folder holding a folder of temporary files for each process with
+     * a transaction in progress, named by its process id. */
+    static final File TXN_FOLDER = Utils.join(Repository.DOT_GITLET, "txn");
+
+    /** Locked by whichever process is committing. */
+    static final File LOCK_FILE = Utils.join(Repository.DOT_GITLET, "lock");
+
+    /** Milliseconds to keep retrying for LOCK_FILE before giving up. */
+    static final long LOCK_WAIT = 30000;
+
+    /** Longest pause in milliseconds between attempts to lock. */
+    static final int PAUSE_MAX = 50;
+
+    /** The journal of the transaction being committed, empty when there
+     * is none. */
+    static final File JOURNAL_FILE = Utils.join(Repository.DOT_GITLET,
+            "journal");
+
+    /** First four bytes of a journal, "GJN1". */
+    static final int MAGIC = 0x474a4e31;
+
+    /** Starts a new transaction, throwing away whatever one begun earlier
+     * in this JVM wrote without committing. */
+    static synchronized void begin() {
+        for (File tmp : _pending.values()) {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+        _pending.clear();
+        _after.clear();
+        _expected.clear();
+        _active = true;
+    }
+
+    /** @return File
+     * @param prefix STRING
+     * Returns a new, empty temporary file in TXN_FOLDER, for a caller to
+     * write and then pass to add. */
+    static File tempFile(String prefix) {
+        _dir.mkdirs();
+        try {
+            return File.createTempFile(prefix, ".tmp", _dir);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @param tmp FILE, from tempFile.
+     * @param dest FILE
+     * Has the transaction rename TMP to DEST when it commits, or renames
+     * it now if no transaction is running. */
+    static synchronized void add(File tmp, File dest) {
+        if (!_active) {
+            move(tmp, dest);
+            return;
+        }
+        File old = _pending.remove(dest);
+        if (old != null) {
+            old.delete();
+        }
+        _pending.put(dest, tmp);
+    }
+
+    /** @param dest FILE
+     * @param contents BYTE[]
+     * Has the transaction replace DEST with CONTENTS. */
+    static void write(File dest, byte[] contents) {
+        File tmp = tempFile("file");
+        Utils.writeContents(tmp, contents);
+        add(tmp, dest);
+    }
+
+    /** @param dest FILE
+     * Has the transaction delete DEST. */
+    static synchronized void delete(File dest) {
+        if (!_active) {
+            dest.delete();
+            return;
+        }
+        File old = _pending.remove(dest);
+        if (old != null) {
+            old.delete();
+        }
+        _pending.put(dest, null);
+    }
+
+    /** @return File
+     * @param dest FILE
+     * Returns the file holding what the transaction has written to DEST,
+     * which is DEST itself if it has written nothing there. */
+    static synchronized File find(File dest) {
+        File tmp = _pending.get(dest);
+        return tmp != null ? tmp : dest;
+    }
+
+    /** @return byte[]
+     * @param f FILE
+     * Returns the contents of F as the transaction sees it, or null if
+     * there is no F, and unless the transaction wrote F, remembers them,
+     * so that commit() fails if F is changed before it. */
+    static synchronized byte[] read(File f) {
+        if (_pending.containsKey(f)) {
+            File tmp = _pending.get(f);
+            return tmp == null ? null : Utils.readContents(tmp);
+        }
+        byte[] res = contents(f);
+        if (_active && !_expected.containsKey(f)) {
+            _expected.put(f, res);
+        }
+        return res;
+    }
+
+    /** @return T
+     * @param call SUPPLIER<T>
+     * Returns the result of CALL, run holding LOCK_FILE, so that no other
+     * process commits until it is done. */
+    static <T> T locked(Supplier<T> call) {
+        if (_lock != null) {
+            return call.get();
+        }
+        _lock = acquire(true);
+        try {
+            return call.get();
+        } finally {
+            release();
+        }
+    }
+
+    /** @param call RUNNABLE
+     * Runs CALL holding LOCK_FILE. */
+    static void locked(Runnable call) {
+        locked(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /** @param update RUNNABLE
+     * Runs UPDATE, which brings the CommitGraph or CommitLog up to date
+     * with what the transaction wrote, once it has committed. If the
+     * commit is finished by load() instead, both are rebuilt. */
+    static synchronized void afterCommit(Runnable update) {
+        if (_active) {
+            _after.add(update);
+        } else {
+            update.run();
+        }
+    }
+
+    /** Makes everything written since begin() durable and visible, or
+     * throws a Conflict, leaving the repository as it was, if a file the
+     * transaction read has changed since. */
+    static synchronized void commit() {
+        _active = false;
+        if (_pending.isEmpty()) {
+            return;
+        }
+        long t = Trace.start();
+        List<File> tmps = new ArrayList<>(_pending.values());
+        tmps.removeIf(Objects::isNull);
+        tmps.parallelStream().forEach(f -> sync(f, false));
+        Trace.end("fsync-batch", t, tmps.size());
+        locked(Transaction::publish);
+        _dir.delete();
+    }
+
+    /** Checks that nothing the transaction read has changed, then writes
+     * the journal and does what it says. The CommitGraph and CommitLog
+     * are fsynced before the journal is truncated, since it is what asks
+     * for them to be rebuilt after a crash. LOCK_FILE must be held. */
+    private static void publish() {
+        for (Map.Entry<File, byte[]> e : _expected.entrySet()) {
+            if (!Arrays.equals(contents(e.getKey()), e.getValue())) {
+                throw new Conflict(e.getKey());
+            }
+        }
+        long t = Trace.start();
+        writeJournal(!_after.isEmpty());
+        Trace.end("journal", t, JOURNAL_FILE);
+
+        t = Trace.start();
+        apply(new ArrayList<>(_pending.entrySet()));
+        Trace.end("publish", t, _pending.size());
+        _pending.clear();
+        if (!_after.isEmpty()) {
+            for (Runnable update : _after) {
+                update.run();
+            }
+            _after.clear();
+            sync(CommitGraph.GRAPH_FILE, false);
+            sync(CommitLog.LOG_FILE, false);
+        }
+        truncateJournal();
+    }
+
+    /** Finishes the commit of a transaction cut short by a crash, if
+     * JOURNAL_FILE records one, and throws away the files of processes
+     * which died before reaching it. This never waits: if another
+     * process holds LOCK_FILE, it is left to that process. */
+    static void recover() {
+        List<File> stale = stale();
+        if (JOURNAL_FILE.length() == 0 && stale.isEmpty()) {
+            return;
+        }
+        boolean held = _lock != null;
+        if (!held) {
+            _lock = acquire(false);
+            if (_lock == null) {
+                return;
+            }
+        }
+        try {
+            if (JOURNAL_FILE.length() > 0) {
+                List<Map.Entry<File, File>> entries = new ArrayList<>();
+                boolean rebuild = readJournal(entries);
+                if (!entries.isEmpty()) {
+                    apply(entries);
+                    if (rebuild) {
+                        CommitGraph.rebuild();
+                        CommitLog.rebuild();
+                    }
+                }
+                truncateJournal();
+            }
+            for (File f : stale) {
+                File[] files = f.listFiles();
+                if (files != null) {
+                    for (File g : files) {
+                        g.delete();
+                    }
+                }
+                f.delete();
+            }
+        } finally {
+            if (!held) {
+                release();
+            }
+        }
+    }
+
+    /** @return List<File>
+     * Returns whatever is in TXN_FOLDER that belongs to no process still
+     * running. */
+    private static List<File> stale() {
+        List<File> res = new ArrayList<>();
+        File[] files = TXN_FOLDER.listFiles();
+        if (files == null) {
+            return res;
+        }
+        for (File f : files) {
+            if (!f.equals(_dir) && !running(f.getName())) {
+                res.add(f);
+            }
+        }
+        return res;
+    }
+
+    /** @return boolean
+     * @param pid STRING
+     * Returns whether PID is the id of a process that is running. */
+    private static boolean running(String pid) {
+        try {
+            return ProcessHandle.of(Long.parseLong(pid))
+                    .map(ProcessHandle::isAlive).orElse(false);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /** @return FileChannel
+     * @param wait BOOLEAN
+     * Locks LOCK_FILE and returns the channel holding the lock. If WAIT,
+     * retries, pausing a little longer each time, for up to LOCK_WAIT
+     * milliseconds; otherwise tries once and returns null if it fails. */
+    private static FileChannel acquire(boolean wait) {
+        long deadline = System.currentTimeMillis() + LOCK_WAIT;
+        try {
+            FileChannel ch = FileChannel.open(LOCK_FILE.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            for (int pause = 1;; pause = Math.min(2 * pause, PAUSE_MAX)) {
+                if (ch.tryLock() != null) {
+                    return ch;
+                }
+                if (!wait || System.currentTimeMillis() > deadline) {
+                    ch.close();
+                    if (!wait) {
+                        return null;
+                    }
+                    throw new GitletException("Another gitlet command is"
+                            + " still changing the repository.");
+                }
+                Thread.sleep(pause + RANDOM.nextInt(pause));
+            }
+        } catch (IOException | InterruptedException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Unlocks LOCK_FILE. */
+    private static void release() {
+        try {
+            _lock.close();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        } finally {
+            _lock = null;
+        }
+    }
+
+    /** @return byte[]
+     * @param f FILE
+     * Returns the contents of F, or null if there is no F. */
+    private static byte[] contents(File f) {
+        try {
+            return Files.readAllBytes(f.toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @param entries LIST<MAP.ENTRY<FILE, FILE>>
+     * Renames the temporary file of each of ENTRIES to its destination,
+     * or deletes the destination if it has none, then fsyncs each folder
+     * changed. A temporary file which is gone was renamed already. */
+    private static void apply(List<Map.Entry<File, File>> entries) {
+        Set<File> folders = new HashSet<>();
+        for (Map.Entry<File, File> e : entries) {
+            File dest = e.getKey();
+            if (e.getValue() == null) {
+                dest.delete();
+            } else if (e.getValue().exists()) {
+                move(e.getValue(), dest);
+            }
+            folders.add(dest.getAbsoluteFile().getParentFile());
+        }
+        folders.parallelStream().forEach(f -> sync(f, true));
+    }
+
+    /** @param rebuild BOOLEAN
+     * Writes the pending renames to JOURNAL_FILE, with REBUILD, followed
+     * by their CRC32, and fsyncs it. */
+    private static void writeJournal(boolean rebuild) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeBoolean(rebuild);
+            out.writeInt(_pending.size());
+            for (Map.Entry<File, File> e : _pending.entrySet()) {
+                out.writeUTF(relName(e.getKey()));
+                out.writeUTF(e.getValue() == null ? ""
+                        : relName(e.getValue()));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        boolean created = !JOURNAL_FILE.exists();
+        try (FileChannel ch = FileChannel.open(JOURNAL_FILE.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        if (created) {
+            sync(Repository.DOT_GITLET, true);
+        }
+    }
+
+    /** @return boolean
+     * @param entries LIST<MAP.ENTRY<FILE, FILE>>
+     * Adds the renames JOURNAL_FILE records to ENTRIES, and returns
+     * whether it asks for the indexes to be rebuilt. A journal which was
+     * not written in full is ignored. */
+    private static boolean readJournal(List<Map.Entry<File, File>> entries) {
+        byte[] b = Utils.readContents(JOURNAL_FILE);
+        if (b.length < 4 + 1 + 4 + 4) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(b, 0, b.length - 4);
+        if ((int) crc.getValue() != ByteBuffer.wrap(b, b.length - 4, 4)
+                .getInt()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(b))) {
+            if (in.readInt() != MAGIC) {
+                return false;
+            }
+            boolean rebuild = in.readBoolean();
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                File dest = Utils.join(Repository.DOT_GITLET, in.readUTF());
+                String tmp = in.readUTF();
+                entries.add(new AbstractMap.SimpleEntry<>(dest,
+                        tmp.isEmpty() ? null
+                                : Utils.join(Repository.DOT_GITLET, tmp)));
+            }
+            return rebuild;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Empties JOURNAL_FILE, once everything it lists is in place. */
+    private static void truncateJournal() {
+        try (FileChannel ch = FileChannel.open(JOURNAL_FILE.toPath(),
+                StandardOpenOption.WRITE)) {
+            ch.truncate(0);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @param f FILE
+     * @param folder BOOLEAN
+     * Fsyncs F, which is a folder if FOLDER. Not every system can fsync
+     * a folder, so failing to is ignored. */
+    private static void sync(File f, boolean folder) {
+        try (FileChannel ch = FileChannel.open(f.toPath(),
+                StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            if (!folder) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+    }
+
+    /** @param from FILE
+     * @param to FILE
+     * Renames FROM to TO atomically, replacing TO. */
+    private static void move(File from, File to) {
+        try {
+            Files.move(from.toPath(), to.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** @return String
+     * @param f FILE
+     * Returns the path of F relative to /.gitlet. */
+    private static String relName(File f) {
+        return Repository.DOT_GITLET.toPath().relativize(f.toPath())
+                .toString();
+    }
+
+    /** Thrown by commit() when a file the transaction read has been
+     * changed by another process since. */
+    static class Conflict extends RuntimeException {
+        /** A Conflict over F.
+         * @param f FILE */
+        Conflict(File f) {
+            super(f + " was changed by another process");
+        }
+    }
+
+    /** The folder of TXN_FOLDER holding this process's temporary files. */
+    private static final File _dir = Utils.join(TXN_FOLDER,
+            Long.toString(ProcessHandle.current().pid()));
+
+    /** Chooses how long to pause between attempts to lock. */
+    private static final Random RANDOM = new Random();
+
+    /** What each file the transaction read held, or null if it did not
+     * exist, by file. */
+    private static final Map<File, byte[]> _expected = new HashMap<>();
+
+    /** The channel holding LOCK_FILE while this process has it locked,
+     * or null. */
+    private static FileChannel _lock;
+
+    /** Where each file the transaction writes goes, in the order written,
+     * and the temporary file holding it, or null to delete it. */
+    private static final Map<File, File> _pending = new LinkedHashMap<>();
+
+    /** Index updates to run once the transaction has committed. */
+    private static final List<Runnable> _after = new ArrayList<>();
+
+    /** Whether a transaction is running. */
+    private static volatile boolean _active;
+}
@@ -0,0 +1,336 @@
+package gitlet;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/** This class is the representation for the set of files a CommitObj
+ * tracks, as a trie of Trees addressed by their SHA1 values.
+ *
+ * A file lives at the leaf reached by following the hex digits of the
+ * SHA1 of its path. A Tree is a leaf holding its files while there are
+ * at most LEAF_MAX of them, and otherwise splits into FANOUT children,
+ * so the same set of files always makes the same Trees. Changing one
+ * file only writes new Trees along the path from the root to that file,
+ * and every other Tree is shared with the parent commit.
+ * @author Parth Shisode */
+public class Tree implements Serializable {
+    /** The folder holding Trees in /.gitlet. */
+    static final File TREE_FOLDER = Utils.join(Repository.DOT_GITLET, "trees");
+
+    /** The most files a leaf Tree may hold. */
+    static final int LEAF_MAX = 64;
+
+    /** Number of children of a Tree which is not a leaf. */
+    static final int FANOUT = 16;
+
+    /** Creates a leaf Tree with these parameters.
+     * @param entries TREEMAP<FILE, STRING> */
+    private Tree(TreeMap<File, String> entries) {
+        _entries = entries;
+        _children = null;
+        _sizes = null;
+        _size = entries.size();
+        StringBuilder s = new StringBuilder("leaf\n");
+        for (Map.Entry<File, String> e : entries.entrySet()) {
+            s.append(e.getKey().getPath()).append('\0')
+                    .append(e.getValue()).append('\n');
+        }
+        _sha = Utils.sha1(s.toString());
+    }
+
+    /** Creates a Tree with these children.
+     * @param children STRING[]
+     * @param sizes INT[] */
+    private Tree(String[] children, int[] sizes) {
+        _entries = null;
+        _children = children;
+        _sizes = sizes;
+        int size = 0;
+        StringBuilder s = new StringBuilder("tree\n");
+        for (int i = 0; i < FANOUT; i += 1) {
+            size += sizes[i];
+            s.append(children[i] == null ? "" : children[i]).append('\n');
+        }
+        _size = size;
+        _sha = Utils.sha1(s.toString());
+    }
+
+    /** @return String
+     * @param map MAP<FILE, STRING>
+     * Saves the Trees holding MAP and returns the SHA of the root. */
+    static String build(Map<File, String> map) {
+        return update(null, map, new ArrayList<>());
+    }
+
+    /** @return String
+     * @param root STRING
+     * @param puts MAP<FILE, STRING>
+     * @param removes COLLECTION<FILE>
+     * Saves the Trees for the files of ROOT with PUTS added and REMOVES
+     * removed, and returns the SHA of the new root. ROOT may be null for
+     * an empty set of files. */
+    static String update(String root, Map<File, String> puts,
+                         Collection<File> removes) {
+        TreeMap<File, String> edits = new TreeMap<>();
+        for (File f : removes) {
+            edits.put(f, null);
+        }
+        edits.putAll(puts);
+        String res = update(root, edits, 0);
+        if (res == null) {
+            res = new Tree(new TreeMap<>()).save();
+        }
+        return res;
+    }
+
+    /** @return String
+     * @param sha STRING
+     * @param edits TREEMAP<FILE, STRING>
+     * @param depth INT
+     * Applies EDITS, where a null value is a removal, to the Tree SHA at
+     * DEPTH and returns the SHA of the result, or null if it is empty. */
+    private static String update(String sha, TreeMap<File, String> edits,
+                                 int depth) {
+        if (edits.isEmpty()) {
+            return sha;
+        }
+        Tree t = sha == null ? null : read(sha);
+        if (t == null || t.isLeaf()) {
+            TreeMap<File, String> entries = new TreeMap<>();
+            if (t != null) {
+                entries.putAll(t._entries);
+            }
+            apply(entries, edits);
+            return build(entries, depth);
+        }
+
+        List<TreeMap<File, String>> groups = split(edits, depth);
+        String[] children = t._children.clone();
+        int[] sizes = t._sizes.clone();
+        int size = 0;
+        for (int i = 0; i < FANOUT; i += 1) {
+            if (!groups.get(i).isEmpty()) {
+                children[i] = update(children[i], groups.get(i), depth + 1);
+                sizes[i] = children[i] == null ? 0 : read(children[i])._size;
+            }
+            size += sizes[i];
+        }
+        if (size <= LEAF_MAX) {
+            TreeMap<File, String> entries = new TreeMap<>();
+            for (String child : children) {
+                flatten(child, entries);
+            }
+            return build(entries, depth);
+        }
+        return new Tree(children, sizes).save();
+    }
+
+    /** @return String
+     * @param entries TREEMAP<FILE, STRING>
+     * @param depth INT
+     * Saves the Trees holding ENTRIES at DEPTH and returns the SHA of
+     * their root, or null if ENTRIES is empty. */
+    private static String build(TreeMap<File, String> entries, int depth) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        if (entries.size() <= LEAF_MAX || depth == MAX_DEPTH) {
+            return new Tree(entries).save();
+        }
+        List<TreeMap<File, String>> groups = split(entries, depth);
+        String[] children = new String[FANOUT];
+        int[] sizes = new int[FANOUT];
+        for (int i = 0; i < FANOUT; i += 1) {
+            children[i] = build(groups.get(i), depth + 1);
+            sizes[i] = groups.get(i).size();
+        }
+        return new Tree(children, sizes).save();
+    }
+
+    /** @param entries TREEMAP<FILE, STRING>
+     * @param edits TREEMAP<FILE, STRING>
+     * Applies EDITS to ENTRIES, where a null value is a removal. */
+    private static void apply(TreeMap<File, String> entries,
+                              TreeMap<File, String> edits) {
+        for (Map.Entry<File, String> e : edits.entrySet()) {
+            if (e.getValue() == null) {
+                entries.remove(e.getKey());
+            } else {
+                entries.put(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /** @return List<TreeMap<File, String>>
+     * @param map TREEMAP<FILE, STRING>
+     * @param depth INT
+     * Splits MAP into the FANOUT children of a Tree at DEPTH. */
+    private static List<TreeMap<File, String>> split(
+            TreeMap<File, String> map, int depth) {
+        List<TreeMap<File, String>> groups = new ArrayList<>();
+        for (int i = 0; i < FANOUT; i += 1) {
+            groups.add(new TreeMap<>());
+        }
+        for (Map.Entry<File, String> e : map.entrySet()) {
+            groups.get(digit(e.getKey(), depth)).put(e.getKey(),
+                    e.getValue());
+        }
+        return groups;
+    }
+
+    /** @return int
+     * @param f FILE
+     * @param depth INT
+     * Returns the child F belongs to in a Tree at DEPTH. */
+    private static int digit(File f, int depth) {
+        return Character.digit(Utils.sha1(f.getPath()).charAt(depth), 16);
+    }
+
+    /** @return String
+     * @param sha STRING
+     * @param f FILE
+     * Returns the SHA of the Blob for F in the Tree SHA, or null if the
+     * Tree does not contain F. */
+    static String get(String sha, File f) {
+        for (int depth = 0; sha != null; depth += 1) {
+            Tree t = read(sha);
+            if (t.isLeaf()) {
+                return t._entries.get(f);
+            }
+            sha = t._children[digit(f, depth)];
+        }
+        return null;
+    }
+
+    /** @param from STRING
+     * @param to STRING
+     * @param changes TREEMAP<FILE, STRING[]>
+     * Adds to CHANGES every file whose Blob differs between the Trees FROM
+     * and TO, paired with its Blobs in FROM and in TO, either of which is
+     * null where that Tree lacks the file. Both Trees split their files
+     * the same way, so children with equal SHAs are skipped unread. */
+    static void diff(String from, String to,
+                     TreeMap<File, String[]> changes) {
+        if (from == null ? to == null : from.equals(to)) {
+            return;
+        }
+        Tree a = from == null ? null : read(from);
+        Tree b = to == null ? null : read(to);
+        if (a != null && b != null && !a.isLeaf() && !b.isLeaf()) {
+            for (int i = 0; i < FANOUT; i += 1) {
+                diff(a._children[i], b._children[i], changes);
+            }
+            return;
+        }
+        TreeMap<File, String> old = new TreeMap<>();
+        TreeMap<File, String> now = new TreeMap<>();
+        flatten(from, old);
+        flatten(to, now);
+        for (Map.Entry<File, String> e : old.entrySet()) {
+            if (!e.getValue().equals(now.get(e.getKey()))) {
+                changes.put(e.getKey(), new String[] {e.getValue(),
+                    now.get(e.getKey())});
+            }
+        }
+        for (Map.Entry<File, String> e : now.entrySet()) {
+            if (!old.containsKey(e.getKey())) {
+                changes.put(e.getKey(), new String[] {null, e.getValue()});
+            }
+        }
+    }
+
+    /** @param sha STRING
+     * @param map TREEMAP<FILE, STRING>
+     * Adds every file in the Tree SHA to MAP. */
+    static void flatten(String sha, TreeMap<File, String> map) {
+        if (sha == null) {
+            return;
+        }
+        Tree t = read(sha);
+        if (t.isLeaf()) {
+            map.putAll(t._entries);
+        } else {
+            for (String child : t._children) {
+                flatten(child, map);
+            }
+        }
+    }
+
+    /** @param sha STRING
+     * @param trees PREDICATE<STRING>
+     * @param blobs CONSUMER<STRING>
+     * Calls TREES on the SHA of every Tree under and including the Tree
+     * SHA, skipping the Trees below one for which it returns false, and
+     * BLOBS on the SHA of every Blob in the leaves it reaches. */
+    static void walk(String sha, Predicate<String> trees,
+                     Consumer<String> blobs) {
+        if (sha == null || !trees.test(sha)) {
+            return;
+        }
+        Tree t = read(sha);
+        if (t.isLeaf()) {
+            t._entries.values().forEach(blobs);
+        } else {
+            for (String child : t._children) {
+                walk(child, trees, blobs);
+            }
+        }
+    }
+
+    /** @return Tree
+     * @param sha STRING
+     * Reads the Tree SHA, whether it is loose in TREE_FOLDER or in the
+     * Pack, through the ObjectCache. */
+    static Tree read(String sha) {
+        Tree t = ObjectCache.read(sha, TREE_FOLDER, Tree.class);
+        if (t == null) {
+            throw new IllegalArgumentException("No tree " + sha);
+        }
+        return t;
+    }
+
+    /** @return String
+     * Saves this Tree to TREE_FOLDER, unless it already exists, in which
+     * case it is freshened for gc, and returns its SHA. */
+    private String save() {
+        File f = Utils.join(TREE_FOLDER, _sha);
+        if (!Collector.freshen(Transaction.find(f), _sha)) {
+            long t = Trace.start();
+            byte[] b = Utils.serialize(this);
+            Transaction.write(f, b);
+            Trace.end("write-object", t, b.length);
+        }
+        return _sha;
+    }
+
+    /** @return boolean
+     * Returns whether this Tree is a leaf. */
+    private boolean isLeaf() {
+        return _entries != null;
+    }
+
+    /** The depth at which the digits of a path's SHA1 run out. */
+    private static final int MAX_DEPTH = 40;
+
+    /** The files of a leaf and the SHAs of their Blobs, or null. */
+    private final TreeMap<File, String> _entries;
+
+    /** The SHAs of the children of a Tree which is not a leaf, or null. */
+    private final String[] _children;
+
+    /** The number of files under each of _children, or null. */
+    private final int[] _sizes;
+
+    /** The number of files under this Tree. */
+    private final int _size;
+
+    /** The SHA1 value of this Tree. */
+    private final String _sha;
+}
@@ -0,0 +1,91 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/** This class walks a directory of the working tree in parallel on a
+ * ForkJoinPool, applying a function such as hashing to every plain file
+ * below it. Each subdirectory is its own task, and large directories are
+ * split into batches so that their files are handled concurrently too.
+ * @author Parth Shisode */
+public class Walker extends RecursiveTask<TreeMap<File, String>> {
+
+    /** The most files a single task handles before splitting. */
+    static final int BATCH = 64;
+
+    /** @return TreeMap<File, String>
+     * @param dir FILE
+     * @param fn FUNCTION<FILE, STRING>
+     * Returns every plain file below DIR, except those in /.gitlet,
+     * paired with the result of FN on it. */
+    static TreeMap<File, String> walk(File dir, Function<File, String> fn) {
+        return POOL.invoke(new Walker(new File[] {dir}, 0, 1, fn));
+    }
+
+    /** Creates a task for these parameters.
+     * @param items FILE[]
+     * @param lo INT
+     * @param hi INT
+     * @param fn FUNCTION<FILE, STRING> */
+    private Walker(File[] items, int lo, int hi, Function<File, String> fn) {
+        _items = items;
+        _lo = lo;
+        _hi = hi;
+        _fn = fn;
+    }
+
+    @Override
+    protected TreeMap<File, String> compute() {
+        if (_hi - _lo > BATCH) {
+            int mid = (_lo + _hi) >>> 1;
+            Walker left = new Walker(_items, _lo, mid, _fn);
+            left.fork();
+            TreeMap<File, String> res =
+                    new Walker(_items, mid, _hi, _fn).compute();
+            res.putAll(left.join());
+            return res;
+        }
+
+        TreeMap<File, String> res = new TreeMap<>();
+        List<Walker> subdirs = new ArrayList<>();
+        for (int i = _lo; i < _hi; i += 1) {
+            File f = _items[i];
+            if (f.isDirectory()) {
+                File[] children = f.listFiles();
+                if (children != null && !f.equals(Repository.DOT_GITLET)
+                        && !Files.isSymbolicLink(f.toPath())) {
+                    Walker w = new Walker(children, 0, children.length, _fn);
+                    w.fork();
+                    subdirs.add(w);
+                }
+            } else if (f.isFile()) {
+                res.put(f, _fn.apply(f));
+            }
+        }
+        for (Walker w : subdirs) {
+            res.putAll(w.join());
+        }
+        return res;
+    }
+
+    /** The pool every walk runs on. */
+    private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+    /** The files and directories this task may handle. */
+    private final File[] _items;
+
+    /** The index of the first of _items this task handles. */
+    private final int _lo;
+
+    /** One past the index of the last of _items this task handles. */
+    private final int _hi;
+
+    /** The function applied to each plain file. */
+    private final Function<File, String> _fn;
+}